@@ -7,18 +7,40 @@ package org.codehaus.mojo.osxappbundle;
  * License for the specific language governing permissions and limitations under the License.
  */
 
+import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.maven.artifact.Artifact;
@@ -29,12 +51,33 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.MavenProjectHelper;
 import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
 import org.apache.velocity.exception.MethodInvocationException;
 import org.apache.velocity.exception.ParseErrorException;
 import org.apache.velocity.exception.ResourceNotFoundException;
+import org.codehaus.mojo.osxappbundle.archive.ArchiveFormat;
+import org.codehaus.mojo.osxappbundle.archive.TarArchiver;
+import org.codehaus.mojo.osxappbundle.cache.BundleCache;
+import org.codehaus.mojo.osxappbundle.cache.CacheKey;
+import org.codehaus.mojo.osxappbundle.cache.FileBundleCache;
+import org.codehaus.mojo.osxappbundle.cache.HttpBundleCache;
 import org.codehaus.mojo.osxappbundle.encoding.DefaultEncodingDetector;
+import org.codehaus.mojo.osxappbundle.launcher.LauncherScript;
+import org.codehaus.mojo.osxappbundle.natives.NativeLibraryExtractor;
+import org.codehaus.mojo.osxappbundle.plist.PlistArray;
+import org.codehaus.mojo.osxappbundle.plist.PlistDict;
+import org.codehaus.mojo.osxappbundle.plist.PlistValue;
+import org.codehaus.mojo.osxappbundle.plist.PlistWriter;
+import org.codehaus.mojo.osxappbundle.report.BundleReport;
+import org.codehaus.mojo.osxappbundle.scan.ResourceWalker;
+import org.codehaus.plexus.PlexusConstants;
+import org.codehaus.plexus.PlexusContainer;
 import org.codehaus.plexus.archiver.ArchiverException;
 import org.codehaus.plexus.archiver.zip.ZipArchiver;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.codehaus.plexus.context.Context;
+import org.codehaus.plexus.context.ContextException;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Contextualizable;
 import org.codehaus.plexus.util.DirectoryScanner;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.cli.CommandLineException;
@@ -47,14 +90,35 @@ import org.codehaus.plexus.velocity.VelocityComponent;
  * @goal bundle
  * @phase package
  * @requiresDependencyResolution runtime
+ * @threadSafe
  */
-public class CreateApplicationBundleMojo extends AbstractMojo {
+public class CreateApplicationBundleMojo extends AbstractMojo implements Contextualizable {
 
 	/**
 	 * Default includes - everything is included.
 	 */
 	private static final String[] DEFAULT_INCLUDES = { "**/**" };
 
+	/**
+	 * The archive format handled by the plexus zip archiver rather than a {@link TarArchiver}.
+	 */
+	private static final String ZIP_FORMAT = "zip";
+
+	/**
+	 * The build cache entry holding the staged build directory.
+	 */
+	private static final String CACHE_BUNDLE_ENTRY = "bundle.tar.zst";
+
+	/**
+	 * The template the plugin used to merge by default, configuring it explicitly means the generated Info.plist.
+	 */
+	private static final String DEFAULT_DICTIONARY_FILE = "org/codehaus/mojo/osxappbundle/Info.plist.template";
+
+	/**
+	 * The argument file holding the classpath for the generated launcher, in $JAVAROOT.
+	 */
+	private static final String LAUNCHER_ARG_FILE = "launcher.args";
+
 	/**
 	 * The Maven Project Object
 	 * 
@@ -135,6 +199,21 @@ public class CreateApplicationBundleMojo extends AbstractMojo {
 	 */
 	private File zipFile;
 
+	/**
+	 * The archives to package the bundle into: <code>zip</code>, <code>tar.zst</code> and/or <code>tar.xz</code>. Tar archives keep Unix file
+	 * permissions and are written next to the zip file, with the same name and their own extension. Defaults to zip only.
+	 * 
+	 * @parameter
+	 */
+	private List archiveFormats;
+
+	/**
+	 * The number of threads used to compress tar archives. Defaults to the number of available processors.
+	 * 
+	 * @parameter default-value="0"
+	 */
+	private int archiveThreads;
+
 	/**
 	 * Paths to be put on the classpath in addition to the projects dependencies. Might be useful to specifiy locations of dependencies in the provided scope
 	 * that are not distributed with the bundle but have a known location on the system. {@see http://jira.codehaus.org/browse/MOJO-874}
@@ -152,20 +231,31 @@ public class CreateApplicationBundleMojo extends AbstractMojo {
 	private List additionalResources;
 
 	/**
-	 * Velocity Component.
-	 * 
-	 * @component
-	 * @readonly
+	 * Velocity Component, looked up only when a custom dictionaryFile is merged.
 	 */
 	private VelocityComponent velocity;
 
 	/**
-	 * The location of the template for Info.plist. Classpath is checked before the file system.
+	 * The container the Velocity component is looked up in.
+	 */
+	private PlexusContainer container;
+
+	/**
+	 * The location of a Velocity template for Info.plist, replacing the one generated by the plugin. Classpath is checked before the file system.
 	 * 
-	 * @parameter default-value="org/codehaus/mojo/osxappbundle/Info.plist.template"
+	 * @parameter
 	 */
 	private String dictionaryFile;
 
+	/**
+	 * Keys to add to the generated Info.plist, or to give another value. Each entry has a <code>key</code>, a <code>value</code> (or a list of
+	 * <code>values</code> for an array) and optionally a <code>type</code>: string, boolean, integer, real or date. Keys of nested dictionaries are
+	 * separated by '/', like <code>Java/Properties/apple.laf.useScreenMenuBar</code>. Not used with a custom dictionaryFile.
+	 * 
+	 * @parameter
+	 */
+	private List infoPlistEntries;
+
 	/**
 	 * Options to the JVM, will be used as the value of VMOptions in Info.plist.
 	 * 
@@ -174,21 +264,91 @@ public class CreateApplicationBundleMojo extends AbstractMojo {
 	private String vmOptions;
 
 	/**
-	 * The Zip archiver.
+	 * If this is set to <code>true</code>, native libraries found in the dependency jars are extracted into the bundle at build time, and
+	 * <code>java.library.path</code> plus the system properties known to JNA, SQLite JDBC and LWJGL are added to VMOptions so the libraries are loaded
+	 * from the bundle instead of being unpacked on every launch.
 	 * 
-	 * @component
-	 * @readonly
+	 * @parameter default-value="false"
 	 */
-	private MavenProjectHelper projectHelper;
+	private boolean extractNativeLibraries;
+
+	/**
+	 * Patterns of the jar entries to extract as native libraries, for example <code>org/sqlite/native/Mac/aarch64/**</code>. Defaults to all .dylib and
+	 * .jnilib files.
+	 * 
+	 * @parameter
+	 */
+	private List nativeLibraryIncludes;
+
+	/**
+	 * Patterns of the jar entries not to extract as native libraries, typically used to filter out other architectures.
+	 * 
+	 * @parameter
+	 */
+	private List nativeLibraryExcludes;
+
+	/**
+	 * The directory, relative to Contents, that extracted native libraries are put into. Usually <code>MacOS</code> or <code>Resources/lib</code>.
+	 * 
+	 * @parameter default-value="MacOS"
+	 */
+	private String nativeLibraryDirectory;
+
+	/**
+	 * If this is set to <code>true</code>, a report is written describing the jars in the bundle: their sizes and why they were included, classes and
+	 * resources found in more than one jar, the largest resources, and the size changes since the previous build.
+	 * 
+	 * @parameter expression="${bundleReport}" default-value="false"
+	 */
+	private boolean generateReport;
+
+	/**
+	 * The location of the bundle report.
+	 * 
+	 * @parameter default-value="${project.build.directory}/${project.build.finalName}-bundle-report.txt"
+	 */
+	private File reportFile;
+
+	/**
+	 * The jar sizes of the previous build, which the bundle report is compared against. It is replaced with the current sizes after every report, so
+	 * point it outside the build directory to keep it across <code>mvn clean</code>.
+	 * 
+	 * @parameter default-value="${project.build.directory}/bundle-report-baseline.properties"
+	 */
+	private File reportBaselineFile;
+
+	/**
+	 * A cache for the finished bundle shared between builds: an <code>http://</code> or <code>https://</code> URL answering GET and PUT, or a
+	 * directory. Before any work is done the .app tree, archives, disk image and report are looked up under a hash of everything that goes into them:
+	 * the artifacts, the Info.plist parameters and template, the stub, the icon and the additional resources. Computing it reads every one of these
+	 * files, so with many resources a lookup costs about as much I/O as copying them. After a miss they are stored in the cache. Credentials can be given in the URL, they are left out of the build log. Set <code>project.build.outputTimestamp</code> to make the
+	 * project jar reproducible, the cache never hits otherwise.
+	 * 
+	 * @parameter expression="${bundleCache}"
+	 */
+	private String buildCache;
+
+	/**
+	 * Store the bundle in the build cache after a miss. Set to <code>false</code> for builds that should only read from the cache.
+	 * 
+	 * @parameter expression="${bundleCacheUpload}" default-value="true"
+	 */
+	private boolean buildCacheUpload;
+
+	/**
+	 * Connect and read timeout in milliseconds for an HTTP build cache.
+	 * 
+	 * @parameter default-value="30000"
+	 */
+	private int buildCacheTimeout;
 
 	/**
 	 * The Zip archiver.
 	 * 
-	 * @parameter expression="${component.org.codehaus.plexus.archiver.Archiver#zip}"
-	 * @required
+	 * @component
 	 * @readonly
 	 */
-	private ZipArchiver zipArchiver;
+	private MavenProjectHelper projectHelper;
 
 	/**
 	 * If this is set to <code>true</code>, the generated DMG file will be internet-enabled. The default is ${false}
@@ -231,6 +391,47 @@ public class CreateApplicationBundleMojo extends AbstractMojo {
 	 */
 	private boolean keepJavaApplicationStubName;
 
+	/**
+	 * Generate a POSIX shell script in Contents/MacOS that starts the application, in place of Apple's JavaApplicationStub. The classpath and JVM
+	 * options are written into the script at build time, and CFBundleExecutable names it. The script prefers an embedded runtime, then
+	 * <code>$JAVA_HOME</code>, <code>/usr/libexec/java_home</code> and <code>java</code> on the path. javaApplicationStub and
+	 * keepJavaApplicationStubName are not used then.
+	 * 
+	 * @parameter expression="${generateLauncher}" default-value="false"
+	 */
+	private boolean generateLauncher;
+
+	/**
+	 * The home directory of a Java runtime embedded in the bundle, relative to the Contents directory, which the generated launcher prefers.
+	 * 
+	 * @parameter default-value="runtime/Contents/Home"
+	 */
+	private String launcherRuntimeDirectory;
+
+	/**
+	 * Pass the classpath to the JVM in an argument file in $JAVAROOT instead of on the command line of the generated launcher. Needs Java 9 or
+	 * later. The launcher passes a copy with absolute paths kept in the user's cache directory, the working directory is left alone.
+	 * 
+	 * @parameter default-value="false"
+	 */
+	private boolean launcherArgFile;
+
+	/**
+	 * Let the generated launcher keep a class data sharing archive of the application in the user's cache directory, so that classes load faster
+	 * from the second launch on. Needs Java 19 or later, older runtimes ignore it.
+	 * 
+	 * @parameter default-value="false"
+	 */
+	private boolean launcherClassDataSharing;
+
+	/**
+	 * Let the generated launcher only use the client compiler (<code>-XX:TieredStopAtLevel=1</code>), which starts faster at the cost of peak
+	 * performance.
+	 * 
+	 * @parameter default-value="false"
+	 */
+	private boolean launcherTieredStartup;
+
 	/**
 	 * The path to the SetFile tool.
 	 * 
@@ -239,207 +440,321 @@ public class CreateApplicationBundleMojo extends AbstractMojo {
 	private static final String SET_FILE_PATH = "/usr/bin/SetFile";
 
 	/**
-	 * Bundle project as a Mac OS X application bundle.
-	 * 
-	 * @throws MojoExecutionException
-	 *             If an unexpected error occurs during packaging of the bundle.
+	 * Directories of the bundle being staged, set up by {@link #stageBundle()}.
 	 */
-	public void execute() throws MojoExecutionException {
+	private File bundleDir;
 
-		// Set up and create directories
-		buildDirectory.mkdirs();
+	private File contentsDir;
 
-		File bundleDir = new File(buildDirectory, bundleName + ".app");
-		bundleDir.mkdirs();
+	private File resourcesDir;
 
-		File contentsDir = new File(bundleDir, "Contents");
-		contentsDir.mkdirs();
+	private File javaDirectory;
 
-		File resourcesDir = new File(contentsDir, "Resources");
-		resourcesDir.mkdirs();
+	/**
+	 * The stub (executable) inside Contents/MacOS.
+	 */
+	private File stub;
 
-		File javaDirectory = new File(resourcesDir, "Java");
-		javaDirectory.mkdirs();
+	/**
+	 * File names of the jar files in $JAVAROOT.
+	 */
+	private List files;
 
-		File macOSDirectory = new File(contentsDir, "MacOS");
-		macOSDirectory.mkdirs();
+	/**
+	 * Staged dependency files, keyed by the artifact file they were copied from.
+	 */
+	private Map stagedArtifacts = new LinkedHashMap();
 
-		// Copy in the native java application stub
-		File stub = new File(macOSDirectory, keepJavaApplicationStubName ? javaApplicationStub.getName() : bundleName);
-		if (!javaApplicationStub.exists()) {
-			String message = "Can't find JavaApplicationStub binary. File does not exist: " + javaApplicationStub;
+	/**
+	 * The compiled includes and excludes of each additional resource FileSet, built once and reused for every change seen by the watch goal.
+	 */
+	private Map resourceWalkers = new IdentityHashMap();
 
-			if (!isOsX()) {
-				message += "\nNOTICE: You are running the osxappbundle plugin on a non OS X platform. To make this work you need to copy the JavaApplicationStub binary into your source tree. Then configure it with the 'javaApplicationStub' configuration property.\nOn an OS X machine, the JavaApplicationStub is typically located under /System/Library/Frameworks/JavaVM.framework/Versions/Current/Resources/MacOS/JavaApplicationStub";
-			}
+	/**
+	 * Wall time of the phases of this execution. The performance tests replace it with one recording peak heap as well.
+	 */
+	private PhaseTimings timings = new PhaseTimings();
 
-			throw new MojoExecutionException(message);
+	/**
+	 * Why each dependency is in the bundle, keyed by its file name in $JAVAROOT.
+	 */
+	private Map dependencyTrails = new HashMap();
 
-		} else {
-			try {
-				FileUtils.copyFile(javaApplicationStub, stub);
-			} catch (IOException e) {
-				throw new MojoExecutionException("Could not copy file " + javaApplicationStub + " to directory " + macOSDirectory, e);
+	/**
+	 * The value of VMOptions in Info.plist, including the native library options.
+	 */
+	private String bundleVmOptions;
+
+	/**
+	 * Bundle project as a Mac OS X application bundle.
+	 * 
+	 * @throws MojoExecutionException
+	 *             If an unexpected error occurs during packaging of the bundle.
+	 */
+	public void execute() throws MojoExecutionException {
+
+		// Fail on a bad format before doing any work
+		getArchiveFormats();
+
+		BundleCache cache = createBuildCache();
+		String cacheKey = null;
+		if (cache != null) {
+			timings.start("cacheLookup");
+			cacheKey = computeCacheKey();
+			if (restoreFromCache(cache, cacheKey)) {
+				timings.end();
+				getLog().debug("Bundle phases: " + timings);
+				return;
 			}
 		}
 
-		// Copy icon file to the bundle if specified
-		if (iconFile != null) {
-			try {
-				FileUtils.copyFileToDirectory(iconFile, resourcesDir);
-			} catch (IOException e) {
-				throw new MojoExecutionException("Error copying file " + iconFile + " to " + resourcesDir, e);
+		stageBundle();
+
+		if (generateReport) {
+			timings.start("report");
+			writeReport();
+		}
+
+		if (isOsX()) {
+			timings.start("diskImage");
+			registerBundle();
+			createDiskImage();
+		}
+
+		for (Iterator i = getArchiveFormats().iterator(); i.hasNext();) {
+			String format = (String) i.next();
+			timings.start("archive." + format);
+			if (ZIP_FORMAT.equalsIgnoreCase(format)) {
+				createZipArchive();
+			} else {
+				createTarArchive(TarArchiver.getFormat(format));
 			}
 		}
 
-		// Resolve and copy in all dependecies from the pom
-		List files = copyDependencies(javaDirectory);
+		if (cache != null && buildCacheUpload) {
+			timings.start("cacheStore");
+			storeInCache(cache, cacheKey);
+		}
 
-		// Create and write the Info.plist file
-		File infoPlist = new File(bundleDir, "Contents/Info.plist");
-		writeInfoPlist(infoPlist, files);
+		timings.end();
+		getLog().debug("Bundle phases: " + timings);
+	}
 
-		// Copy specified additional resources into the top level directory
-		if (additionalResources != null && !additionalResources.isEmpty()) {
-			copyResources(additionalResources);
+	/**
+	 * Make the stub executable, register the .app directory as an application bundle and sign it if set up. Runs on OS X only, for a
+	 * fresh bundle as well as one restored from the build cache, as the archive doesn't keep the attributes these set.
+	 * 
+	 * @throws MojoExecutionException
+	 */
+	void registerBundle() throws MojoExecutionException {
+		// Make the stub executable
+		Commandline chmod = new Commandline();
+		try {
+			chmod.setExecutable("chmod");
+			chmod.createArg().setValue("755");
+			chmod.createArg().setValue(stub.getAbsolutePath());
+
+			chmod.execute();
+		} catch (CommandLineException e) {
+			throw new MojoExecutionException("Error executing " + chmod + " ", e);
 		}
 
-		if (isOsX()) {
-			// Make the stub executable
-			Commandline chmod = new Commandline();
+		// This makes sure that the .app dir is actually registered as an application bundle
+		if (new File(SET_FILE_PATH).exists()) {
+			Commandline setFile = new Commandline();
 			try {
-				chmod.setExecutable("chmod");
-				chmod.createArg().setValue("755");
-				chmod.createArg().setValue(stub.getAbsolutePath());
+				setFile.setExecutable(SET_FILE_PATH);
+				setFile.createArg().setValue("-a B");
+				setFile.createArg().setValue(bundleDir.getAbsolutePath());
 
-				chmod.execute();
+				getLog().info("executing " + setFile.toString());
+				setFile.execute();
 			} catch (CommandLineException e) {
-				throw new MojoExecutionException("Error executing " + chmod + " ", e);
+				throw new MojoExecutionException("Error executing " + setFile, e);
 			}
+		} else {
+			getLog().warn("Could  not set 'Has Bundle' attribute. " + SET_FILE_PATH + " not found, is Developer Tools installed?");
+		}
+		// sign the code (if set up)
 
-			// This makes sure that the .app dir is actually registered as an application bundle
-			if (new File(SET_FILE_PATH).exists()) {
-				Commandline setFile = new Commandline();
-				try {
-					setFile.setExecutable(SET_FILE_PATH);
-					setFile.createArg().setValue("-a B");
-					setFile.createArg().setValue(bundleDir.getAbsolutePath());
+		if (codesignIdentity.length() > 0 && bundleName.equals(getExecutableName())) {
+			Commandline codesign = new Commandline();
+			try {
+				codesign.setExecutable("codesign");
+				codesign.createArg().setValue("-s");
+				codesign.createArg().setValue(codesignIdentity);
+				if (codesignIdentifier.length() > 0) {
+					codesign.createArg().setValue("-i");
+					codesign.createArg().setValue(codesignIdentifier);
+				}
+				codesign.createArg().setValue("-f");
+				codesign.createArg().setValue("-vvvv");
 
-					getLog().info("executing " + setFile.toString());
-					setFile.execute();
-				} catch (CommandLineException e) {
-					throw new MojoExecutionException("Error executing " + setFile, e);
+				if (codesignKeychain.length() > 0) {
+					codesign.createArg().setValue("--keychain");
+					codesign.createArg().setValue(codesignKeychain);
 				}
-			} else {
-				getLog().warn("Could  not set 'Has Bundle' attribute. " + SET_FILE_PATH + " not found, is Developer Tools installed?");
-			}
-			// sign the code (if set up)
-
-			if (codesignIdentity.length() > 0 && !keepJavaApplicationStubName) {
-				Commandline codesign = new Commandline();
-				try {
-					codesign.setExecutable("codesign");
-					codesign.createArg().setValue("-s");
-					codesign.createArg().setValue(codesignIdentity);
-					if (codesignIdentifier.length() > 0) {
-						codesign.createArg().setValue("-i");
-						codesign.createArg().setValue(codesignIdentifier);
-					}
-					codesign.createArg().setValue("-f");
-					codesign.createArg().setValue("-vvvv");
 
-					if (codesignKeychain.length() > 0) {
-						codesign.createArg().setValue("--keychain");
-						codesign.createArg().setValue(codesignKeychain);
-					}
+				// need to escape spaces
+				codesign.createArg().setValue(bundleDir.getAbsolutePath().replaceAll(" ", "\\ "));
 
-					// need to escape spaces
-					codesign.createArg().setValue(bundleDir.getAbsolutePath().replaceAll(" ", "\\ "));
+				getLog().info("executing " + codesign.toString());
+				Process process = codesign.execute();
 
-					getLog().info("executing " + codesign.toString());
-					Process process = codesign.execute();
+				process.waitFor();
 
-					process.waitFor();
+				int result = process.exitValue();
+				if (result == 0) {
+					getLog().info("codesign completed successfully");
+				} else {
 
-					int result = process.exitValue();
-					if (result == 0) {
-						getLog().info("codesign completed successfully");
+					StringBuffer buffer = new StringBuffer();
+					buffer.append("codesign failed with exit code: ");
+					buffer.append(result);
+					buffer.append("\n");
+					if (getLog().isDebugEnabled()) {
+						buffer.append("Verify that the CFBundleExecutable and other Info.plits properties are correct, also check the availability of your certificates in the keychains.\n");
 					} else {
+						buffer.append("retry with 'mvn -X' to get more info");
+					}
+					buffer.append("Error message: ");
+					buffer.append(IOUtils.toString(process.getErrorStream()));
+					if (getLog().isDebugEnabled()) {
+						Commandline debug = new Commandline();
+						debug.setExecutable("security");
+						debug.createArg().setValue("list-keychains");
+
+						Process process2 = debug.execute();
+						process.waitFor();
+						buffer.append("\nSearched keychains:\n");
+						buffer.append(IOUtils.toString(process2.getInputStream()));
+					}
 
-						StringBuffer buffer = new StringBuffer();
-						buffer.append("codesign failed with exit code: ");
-						buffer.append(result);
-						buffer.append("\n");
-						if (getLog().isDebugEnabled()) {
-							buffer.append("Verify that the CFBundleExecutable and other Info.plits properties are correct, also check the availability of your certificates in the keychains.\n");
-						} else {
-							buffer.append("retry with 'mvn -X' to get more info");
-						}
-						buffer.append("Error message: ");
-						buffer.append(IOUtils.toString(process.getErrorStream()));
-						if (getLog().isDebugEnabled()) {
-							Commandline debug = new Commandline();
-							debug.setExecutable("security");
-							debug.createArg().setValue("list-keychains");
-
-							Process process2 = debug.execute();
-							process.waitFor();
-							buffer.append("\nSearched keychains:\n");
-							buffer.append(IOUtils.toString(process2.getInputStream()));
-						}
-
-						getLog().warn(buffer.toString());
+					getLog().warn(buffer.toString());
 
-					}
-				} catch (CommandLineException e) {
-					throw new MojoExecutionException("Error signing the application " + bundleDir.getAbsolutePath() + " with keychain/identity "
-							+ codesignKeychain + "/" + codesignIdentity, e);
-				} catch (IOException e) {
-					throw new MojoExecutionException("blah", e);
-				} catch (InterruptedException e) {
-					getLog().warn("codesign failed, process interrupted", e);
 				}
-
+			} catch (CommandLineException e) {
+				throw new MojoExecutionException("Error signing the application " + bundleDir.getAbsolutePath() + " with keychain/identity "
+						+ codesignKeychain + "/" + codesignIdentity, e);
+			} catch (IOException e) {
+				throw new MojoExecutionException("blah", e);
+			} catch (InterruptedException e) {
+				getLog().warn("codesign failed, process interrupted", e);
 			}
 
-			// Create a .dmg file of the app
-			Commandline dmg = new Commandline();
+		}
+	}
+
+	/**
+	 * Create the disk image of the build directory and attach it to the project. Runs on OS X only.
+	 * 
+	 * @throws MojoExecutionException
+	 */
+	void createDiskImage() throws MojoExecutionException {
+		// Create a .dmg file of the app
+		Commandline dmg = new Commandline();
+		try {
+			dmg.setExecutable("hdiutil");
+			dmg.createArg().setValue("create");
+			dmg.createArg().setValue("-srcfolder");
+			dmg.createArg().setValue(buildDirectory.getAbsolutePath());
+			dmg.createArg().setValue(diskImageFile.getAbsolutePath());
 			try {
-				dmg.setExecutable("hdiutil");
-				dmg.createArg().setValue("create");
-				dmg.createArg().setValue("-srcfolder");
-				dmg.createArg().setValue(buildDirectory.getAbsolutePath());
-				dmg.createArg().setValue(diskImageFile.getAbsolutePath());
-				try {
-					dmg.execute().waitFor();
-				} catch (InterruptedException e) {
-					throw new MojoExecutionException("Thread was interrupted while creating DMG " + diskImageFile, e);
-				}
+				dmg.execute().waitFor();
+			} catch (InterruptedException e) {
+				throw new MojoExecutionException("Thread was interrupted while creating DMG " + diskImageFile, e);
+			}
+		} catch (CommandLineException e) {
+			throw new MojoExecutionException("Error creating disk image " + diskImageFile, e);
+		}
+		if (internetEnable) {
+			try {
+
+				Commandline internetEnable = new Commandline();
+
+				internetEnable.setExecutable("hdiutil");
+				internetEnable.createArg().setValue("internet-enable");
+				internetEnable.createArg().setValue("-yes");
+				internetEnable.createArg().setValue(diskImageFile.getAbsolutePath());
+
+				internetEnable.execute();
 			} catch (CommandLineException e) {
-				throw new MojoExecutionException("Error creating disk image " + diskImageFile, e);
+				throw new MojoExecutionException("Error internet enabling disk image: " + diskImageFile, e);
 			}
-			if (internetEnable) {
-				try {
+		}
+		projectHelper.attachArtifact(project, "dmg", null, diskImageFile);
+	}
 
-					Commandline internetEnable = new Commandline();
+	/**
+	 * Index the staged jars and write the bundle report, then store the jar sizes as the baseline for the next report.
+	 * 
+	 * @throws MojoExecutionException
+	 */
+	private void writeReport() throws MojoExecutionException {
+		Map jars = new LinkedHashMap();
+		for (Iterator i = files.iterator(); i.hasNext();) {
+			String name = (String) i.next();
+			jars.put(name, new File(javaDirectory, name));
+		}
+
+		try {
+			BundleReport report = BundleReport.create(jars, dependencyTrails, Runtime.getRuntime().availableProcessors());
 
-					internetEnable.setExecutable("hdiutil");
-					internetEnable.createArg().setValue("internet-enable");
-					internetEnable.createArg().setValue("-yes");
-					internetEnable.createArg().setValue(diskImageFile.getAbsolutePath());
+			Properties baseline = loadReportBaseline();
 
-					internetEnable.execute();
-				} catch (CommandLineException e) {
-					throw new MojoExecutionException("Error internet enabling disk image: " + diskImageFile, e);
-				}
+			reportFile.getParentFile().mkdirs();
+			PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(reportFile), "utf-8"));
+			try {
+				report.write(out, "Bundle report for " + bundleName + " " + version, baseline, 20);
+			} finally {
+				out.close();
 			}
-			projectHelper.attachArtifact(project, "dmg", null, diskImageFile);
+
+			reportBaselineFile.getParentFile().mkdirs();
+			OutputStream baselineOut = new FileOutputStream(reportBaselineFile);
+			try {
+				report.toBaseline().store(baselineOut, "Jar sizes of " + bundleName);
+			} finally {
+				baselineOut.close();
+			}
+
+			getLog().info("Bundle report written to " + reportFile + ": " + report.getDuplicateClassCount() + " duplicate classes, "
+					+ report.getDuplicateResourceCount() + " duplicate resources");
+		} catch (IOException e) {
+			throw new MojoExecutionException("Could not write bundle report " + reportFile, e);
+		}
+	}
+
+	/**
+	 * @return the jar sizes of the previous report, or <code>null</code> if there is none
+	 * @throws IOException
+	 */
+	private Properties loadReportBaseline() throws IOException {
+		if (!reportBaselineFile.isFile()) {
+			return null;
 		}
+		Properties baseline = new Properties();
+		InputStream in = new FileInputStream(reportBaselineFile);
+		try {
+			baseline.load(in);
+		} finally {
+			in.close();
+		}
+		return baseline;
+	}
 
+	/**
+	 * Zip the build directory, with the stub made executable.
+	 * 
+	 * @throws MojoExecutionException
+	 */
+	private void createZipArchive() throws MojoExecutionException {
+		// A new archiver for every archive, the plexus component is a singleton shared by parallel module builds
+		ZipArchiver zipArchiver = new ZipArchiver();
 		zipArchiver.setDestFile(zipFile);
 		try {
 			String[] stubPattern = { buildDirectory.getName() + "/" + bundleDir.getName() + "/Contents/MacOS/"
-					+ (keepJavaApplicationStubName ? javaApplicationStub.getName() : bundleName) };
+					+ getExecutableName() };
 
 			zipArchiver.addDirectory(buildDirectory.getParentFile(), new String[] { buildDirectory.getName() + "/**" }, stubPattern);
 
@@ -461,33 +776,591 @@ public class CreateApplicationBundleMojo extends AbstractMojo {
 		} catch (IOException e) {
 			throw new MojoExecutionException("IOException creating zip archive of application bundle in " + zipFile, e);
 		}
-
-	}
-
-	private boolean isOsX() {
-		return System.getProperty("mrj.version") != null;
 	}
 
 	/**
-	 * Copy all dependencies into the $JAVAROOT directory
+	 * Tar and compress the build directory next to the zip file, keeping file permissions and with the stub made executable.
 	 * 
-	 * @param javaDirectory
-	 *            where to put jar files
-	 * @return A list of file names added
+	 * @param format
+	 *            the compression format
 	 * @throws MojoExecutionException
 	 */
-	private List copyDependencies(File javaDirectory) throws MojoExecutionException {
+	private void createTarArchive(ArchiveFormat format) throws MojoExecutionException {
+		File archiveFile = getTarArchiveFile(format);
+		try {
+			new TarArchiver(format, getArchiveThreads()).createArchive(buildDirectory, Collections.singleton(getStubEntry()), archiveFile);
+		} catch (IOException e) {
+			throw new MojoExecutionException("Could not create " + format.getExtension() + " archive of application bundle in " + archiveFile, e);
+		}
+		projectHelper.attachArtifact(project, format.getExtension(), null, archiveFile);
+	}
 
-		ArtifactRepositoryLayout layout = new DefaultRepositoryLayout();
+	/**
+	 * @param format
+	 *            a tar format
+	 * @return the archive next to the zip file, with the same name and the extension of the format
+	 */
+	private File getTarArchiveFile(ArchiveFormat format) {
+		String baseName = zipFile.getName().endsWith(".zip") ? zipFile.getName().substring(0, zipFile.getName().length() - 4) : zipFile.getName();
+		return new File(zipFile.getParentFile(), baseName + "." + format.getExtension());
+	}
 
-		List list = new ArrayList();
+	/**
+	 * @return the name of the stub in tar archives of the build directory
+	 */
+	private String getStubEntry() {
+		return buildDirectory.getName() + "/" + bundleName + ".app/Contents/MacOS/" + getExecutableName();
+	}
+
+	private int getArchiveThreads() {
+		return archiveThreads > 0 ? archiveThreads : Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * @return the build cache, or <code>null</code> if none is configured
+	 * @throws MojoExecutionException
+	 *             if the location is not a valid URL
+	 */
+	private BundleCache createBuildCache() throws MojoExecutionException {
+		if (buildCache == null || buildCache.trim().length() == 0) {
+			return null;
+		}
+		String location = buildCache.trim();
+		try {
+			if (location.startsWith("http://") || location.startsWith("https://")) {
+				return new HttpBundleCache(new URL(location), buildCacheTimeout);
+			}
+			if (location.startsWith("file:")) {
+				return new FileBundleCache(new File(new URI(location)));
+			}
+		} catch (IOException e) {
+			throw new MojoExecutionException("Invalid build cache location " + HttpBundleCache.redact(location), e);
+		} catch (URISyntaxException e) {
+			throw new MojoExecutionException("Invalid build cache location " + HttpBundleCache.redact(location), e);
+		}
+		return new FileBundleCache(new File(location));
+	}
+
+	/**
+	 * Hash everything that ends up in the bundle, its archives and disk image. This reads every input file, including all additional resources,
+	 * which are walked in sorted order and streamed into the digest one at a time.
+	 * 
+	 * @return the build cache key of this bundle
+	 * @throws MojoExecutionException
+	 *             if an input can't be read
+	 */
+	private String computeCacheKey() throws MojoExecutionException {
+		final CacheKey key = new CacheKey();
+		try {
+			// A new plugin version may well lay out the bundle differently
+			File plugin = new File(CreateApplicationBundleMojo.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+			key.add("plugin", plugin);
+			key.add("osx", String.valueOf(isOsX()));
+
+			ArtifactRepositoryLayout layout = new DefaultRepositoryLayout();
+			key.add("artifact", layout.pathOf(project.getArtifact()));
+			key.add("artifactFile", project.getArtifact().getFile());
+			for (Iterator i = project.getArtifacts().iterator(); i.hasNext();) {
+				Artifact artifact = (Artifact) i.next();
+				key.add("dependency", layout.pathOf(artifact));
+				key.add("dependencyFile", artifact.getFile());
+				if (generateReport) {
+					key.add("dependencyTrail", String.valueOf(artifact.getDependencyTrail()));
+				}
+			}
+			key.add("additionalClasspath", String.valueOf(additionalClasspath));
+
+			key.add("mainClass", mainClass);
+			key.add("bundleName", bundleName);
+			key.add("bundleIdentifier", bundleIdentifier);
+			key.add("version", version);
+			key.add("jvmVersion", jvmVersion);
+			key.add("vmOptions", vmOptions);
+			key.add("keepJavaApplicationStubName", String.valueOf(keepJavaApplicationStubName));
+			key.add("generateLauncher", String.valueOf(generateLauncher));
+			key.add("launcher", launcherRuntimeDirectory + "/" + launcherArgFile + "/" + launcherClassDataSharing + "/" + launcherTieredStartup);
+			key.add("javaApplicationStubName", javaApplicationStub.getName());
+			key.add("javaApplicationStub", javaApplicationStub);
+			key.add("iconFileName", iconFile == null ? null : iconFile.getName());
+			key.add("iconFile", iconFile);
+
+			key.add("dictionaryFile", dictionaryFile);
+			if (!isCustomDictionary()) {
+				for (Iterator i = getInfoPlistEntries().iterator(); i.hasNext();) {
+					InfoPlistEntry entry = (InfoPlistEntry) i.next();
+					key.add("infoPlistEntry", entry.getKey());
+					key.add("infoPlistEntryType", entry.getType());
+					key.add("infoPlistEntryValue", entry.getValues() != null ? String.valueOf(entry.getValues()) : entry.getValue());
+				}
+			} else if (getDictionaryTemplateFile() != null) {
+				key.add("dictionaryTemplate", getDictionaryTemplateFile());
+			} else {
+				InputStream template = CreateApplicationBundleMojo.class.getClassLoader().getResourceAsStream(dictionaryFile);
+				if (template != null) {
+					try {
+						key.add("dictionaryTemplate", template);
+					} finally {
+						template.close();
+					}
+				}
+			}
+
+			key.add("extractNativeLibraries", String.valueOf(extractNativeLibraries));
+			key.add("nativeLibraryIncludes", String.valueOf(nativeLibraryIncludes));
+			key.add("nativeLibraryExcludes", String.valueOf(nativeLibraryExcludes));
+			key.add("nativeLibraryDirectory", nativeLibraryDirectory);
+
+			key.add("buildDirectory", buildDirectory.getName());
+			key.add("archiveFormats", String.valueOf(getArchiveFormats()));
+			key.add("codesign", codesignKeychain + "/" + codesignIdentity + "/" + codesignIdentifier);
+			key.add("internetEnable", String.valueOf(internetEnable));
+			key.add("generateReport", String.valueOf(generateReport));
+			if (generateReport) {
+				// The report lists the size changes since the baseline. Hash its values, the file also holds the time it was written
+				Properties baseline = loadReportBaseline();
+				key.add("reportBaseline", baseline == null ? null : String.valueOf(new TreeMap(baseline)));
+			}
+
+			for (Iterator i = getAdditionalResources().iterator(); i.hasNext();) {
+				FileSet fileSet = (FileSet) i.next();
+				File resourceDirectory = resolveResourceDirectory(fileSet);
+				key.add("resourceDirectory", fileSet.getDirectory());
+				if (!resourceDirectory.exists()) {
+					continue;
+				}
+
+				// Every resource is read, in an order that doesn't depend on the file system
+				getResourceWalker(fileSet).walkSorted(resourceDirectory, new ResourceWalker.Visitor() {
+					public void visit(Path source, String path) throws IOException {
+						key.add("resource", path);
+						key.add("resourceFile", source.toFile());
+					}
+				});
+			}
+		} catch (IOException e) {
+			throw new MojoExecutionException("Could not compute the build cache key", e);
+		} catch (URISyntaxException e) {
+			throw new MojoExecutionException("Could not compute the build cache key", e);
+		}
+		return key.toString();
+	}
+
+	/**
+	 * @return the build cache entries besides the build directory, and the files they are restored to
+	 * @throws MojoExecutionException
+	 */
+	private Map getCacheOutputs() throws MojoExecutionException {
+		Map outputs = new LinkedHashMap();
+		for (Iterator i = getArchiveFormats().iterator(); i.hasNext();) {
+			String format = (String) i.next();
+			if (ZIP_FORMAT.equalsIgnoreCase(format)) {
+				outputs.put("app.zip", zipFile);
+			} else {
+				ArchiveFormat archiveFormat = TarArchiver.getFormat(format);
+				outputs.put("app." + archiveFormat.getExtension(), getTarArchiveFile(archiveFormat));
+			}
+		}
+		if (isOsX()) {
+			outputs.put("app.dmg", diskImageFile);
+		}
+		if (generateReport) {
+			outputs.put("report.txt", reportFile);
+		}
+		return outputs;
+	}
+
+	/**
+	 * Restore the build directory, archives, disk image and report from the build cache and attach them to the project.
+	 * 
+	 * @return <code>false</code> on a miss, and when the cache can't be read
+	 * @throws MojoExecutionException
+	 */
+	private boolean restoreFromCache(BundleCache cache, String key) throws MojoExecutionException {
+		File bundleArchive = new File(buildDirectory.getParentFile(), buildDirectory.getName() + "-" + CACHE_BUNDLE_ENTRY);
+		try {
+			if (!cache.fetch(key, CACHE_BUNDLE_ENTRY, bundleArchive)) {
+				getLog().info("Build cache miss for " + key);
+				return false;
+			}
+			Map outputs = getCacheOutputs();
+			for (Iterator i = outputs.entrySet().iterator(); i.hasNext();) {
+				Map.Entry output = (Map.Entry) i.next();
+				if (!cache.fetch(key, (String) output.getKey(), (File) output.getValue())) {
+					getLog().info("Build cache entry " + key + " has no " + output.getKey() + ", building the bundle");
+					return false;
+				}
+			}
+
+			FileUtils.deleteDirectory(buildDirectory);
+			try {
+				createCacheArchiver().extractArchive(bundleArchive, buildDirectory.getParentFile());
+			} catch (IOException e) {
+				// Don't leave half a bundle behind for the build to stage over
+				FileUtils.deleteDirectory(buildDirectory);
+				throw e;
+			}
+		} catch (IOException e) {
+			getLog().warn("Could not read from build cache " + cache + ": " + e.getMessage());
+			return false;
+		} finally {
+			bundleArchive.delete();
+		}
+
+		bundleDir = new File(buildDirectory, bundleName + ".app");
+		stub = new File(new File(bundleDir, "Contents/MacOS"), getExecutableName());
+		if (isOsX()) {
+			registerBundle();
+		}
+
+		for (Iterator i = getArchiveFormats().iterator(); i.hasNext();) {
+			String format = (String) i.next();
+			if (ZIP_FORMAT.equalsIgnoreCase(format)) {
+				projectHelper.attachArtifact(project, "zip", null, zipFile);
+			} else {
+				ArchiveFormat archiveFormat = TarArchiver.getFormat(format);
+				projectHelper.attachArtifact(project, archiveFormat.getExtension(), null, getTarArchiveFile(archiveFormat));
+			}
+		}
+		if (isOsX()) {
+			projectHelper.attachArtifact(project, "dmg", null, diskImageFile);
+		}
+
+		getLog().info("Restored bundle from build cache entry " + key);
+		return true;
+	}
+
+	/**
+	 * @return the archiver for the build directory entry of the build cache
+	 */
+	private TarArchiver createCacheArchiver() {
+		return new TarArchiver(TarArchiver.getFormat("tar.zst"), getArchiveThreads());
+	}
+
+	/**
+	 * Store the build directory, archives, disk image and report in the build cache. Failing to do so doesn't fail the build.
+	 */
+	private void storeInCache(BundleCache cache, String key) throws MojoExecutionException {
+		File bundleArchive = new File(buildDirectory.getParentFile(), buildDirectory.getName() + "-" + CACHE_BUNDLE_ENTRY);
+		try {
+			createCacheArchiver().createArchive(buildDirectory, Collections.singleton(getStubEntry()), bundleArchive);
+			cache.store(key, CACHE_BUNDLE_ENTRY, bundleArchive);
+
+			for (Iterator i = getCacheOutputs().entrySet().iterator(); i.hasNext();) {
+				Map.Entry output = (Map.Entry) i.next();
+				File file = (File) output.getValue();
+				if (file.isFile()) {
+					cache.store(key, (String) output.getKey(), file);
+				}
+			}
+			getLog().info("Stored bundle in build cache entry " + key);
+		} catch (IOException e) {
+			getLog().warn("Could not store bundle in build cache " + cache + ": " + e.getMessage());
+		} finally {
+			bundleArchive.delete();
+		}
+	}
+
+	/**
+	 * @return the configured archive formats, zip if none are
+	 * @throws MojoExecutionException
+	 *             if a format is not supported
+	 */
+	private List getArchiveFormats() throws MojoExecutionException {
+		if (archiveFormats == null || archiveFormats.isEmpty()) {
+			return Collections.singletonList(ZIP_FORMAT);
+		}
+		for (Iterator i = archiveFormats.iterator(); i.hasNext();) {
+			String format = (String) i.next();
+			if (!ZIP_FORMAT.equalsIgnoreCase(format) && TarArchiver.getFormat(format) == null) {
+				throw new MojoExecutionException("Unknown archive format " + format + ", supported formats are zip, tar.zst and tar.xz");
+			}
+		}
+		return archiveFormats;
+	}
+
+	/**
+	 * Create the directory structure of the bundle and copy the stub, icon, dependencies, Info.plist and additional resources into it.
+	 * 
+	 * @throws MojoExecutionException
+	 *             If an unexpected error occurs while staging the bundle.
+	 */
+	void stageBundle() throws MojoExecutionException {
+
+		timings.start("layout");
+
+		// Set up and create directories
+		buildDirectory.mkdirs();
+
+		bundleDir = new File(buildDirectory, bundleName + ".app");
+		bundleDir.mkdirs();
+
+		contentsDir = new File(bundleDir, "Contents");
+		contentsDir.mkdirs();
+
+		resourcesDir = new File(contentsDir, "Resources");
+		resourcesDir.mkdirs();
+
+		javaDirectory = new File(resourcesDir, "Java");
+		javaDirectory.mkdirs();
+
+		File macOSDirectory = new File(contentsDir, "MacOS");
+		macOSDirectory.mkdirs();
+
+		// Copy in the native java application stub, unless a launcher is generated later on
+		stub = new File(macOSDirectory, getExecutableName());
+		if (generateLauncher) {
+			getLog().debug("Generating launcher " + stub.getName() + " instead of copying the JavaApplicationStub");
+		} else if (!javaApplicationStub.exists()) {
+			String message = "Can't find JavaApplicationStub binary. File does not exist: " + javaApplicationStub;
+
+			if (!isOsX()) {
+				message += "\nNOTICE: You are running the osxappbundle plugin on a non OS X platform. To make this work you need to copy the JavaApplicationStub binary into your source tree. Then configure it with the 'javaApplicationStub' configuration property.\nOn an OS X machine, the JavaApplicationStub is typically located under /System/Library/Frameworks/JavaVM.framework/Versions/Current/Resources/MacOS/JavaApplicationStub";
+			}
+
+			throw new MojoExecutionException(message);
+
+		} else {
+			try {
+				FileUtils.copyFile(javaApplicationStub, stub);
+			} catch (IOException e) {
+				throw new MojoExecutionException("Could not copy file " + javaApplicationStub + " to directory " + macOSDirectory, e);
+			}
+		}
+
+		// Copy icon file to the bundle if specified
+		copyIcon();
+
+		// Resolve and copy in all dependecies from the pom
+		timings.start("dependencies");
+		files = copyDependencies(javaDirectory);
+
+		// Pull native libraries out of the staged jars so they load straight from the bundle
+		timings.start("nativeLibraries");
+		refreshNativeLibraries();
+
+		// Write the launcher, which needs the VMOptions
+		timings.start("launcher");
+		refreshLauncher();
+
+		// Create and write the Info.plist file
+		timings.start("infoPlist");
+		refreshInfoPlist();
+
+		// Copy specified additional resources into the top level directory
+		timings.start("resources");
+		if (additionalResources != null && !additionalResources.isEmpty()) {
+			copyResources(additionalResources);
+		}
+		timings.end();
+	}
+
+	/**
+	 * Copy the icon file into the Resources directory of the bundle, if one is specified.
+	 * 
+	 * @throws MojoExecutionException
+	 */
+	void copyIcon() throws MojoExecutionException {
+		if (iconFile != null) {
+			try {
+				FileUtils.copyFileToDirectory(iconFile, resourcesDir);
+			} catch (IOException e) {
+				throw new MojoExecutionException("Error copying file " + iconFile + " to " + resourcesDir, e);
+			}
+		}
+	}
+
+	/**
+	 * Copy a single dependency (or the project's own artifact) into $JAVAROOT again.
+	 * 
+	 * @param source
+	 *            the artifact file as resolved by Maven
+	 * @return <code>false</code> if the file is not part of the staged bundle
+	 * @throws MojoExecutionException
+	 */
+	boolean copyDependency(File source) throws MojoExecutionException {
+		File dest = (File) stagedArtifacts.get(source);
+		if (dest == null) {
+			return false;
+		}
+		try {
+			FileUtils.copyFile(source, dest);
+		} catch (IOException e) {
+			throw new MojoExecutionException("Error copying file " + source + " into " + javaDirectory, e);
+		}
+		return true;
+	}
+
+	/**
+	 * Extract the native libraries again and work out the resulting VMOptions.
+	 * 
+	 * @throws MojoExecutionException
+	 */
+	void refreshNativeLibraries() throws MojoExecutionException {
+		bundleVmOptions = vmOptions;
+		if (extractNativeLibraries) {
+			bundleVmOptions = joinOptions(vmOptions, extractNativeLibraries(javaDirectory, files, contentsDir));
+		}
+	}
+
+	/**
+	 * Write the generated launcher and its argument file, if the launcher is enabled.
+	 * 
+	 * @throws MojoExecutionException
+	 */
+	void refreshLauncher() throws MojoExecutionException {
+		if (!generateLauncher) {
+			return;
+		}
+
+		LauncherScript launcher = new LauncherScript(bundleName, mainClass, getClasspath(files));
+		launcher.setVmOptions(bundleVmOptions);
+		launcher.setJvmVersion(jvmVersion);
+		launcher.setRuntimeDirectory(launcherRuntimeDirectory);
+		launcher.setIconFile(iconFile == null ? null : iconFile.getName());
+		launcher.setClassDataSharing(launcherClassDataSharing);
+		launcher.setTieredStartup(launcherTieredStartup);
+
+		try {
+			if (launcherArgFile) {
+				launcher.setArgFile(LAUNCHER_ARG_FILE);
+				FileUtils.fileWrite(new File(javaDirectory, LAUNCHER_ARG_FILE).getPath(), "utf-8", launcher.generateArgFile());
+			}
+			FileUtils.fileWrite(stub.getPath(), "utf-8", launcher.generate());
+		} catch (IllegalStateException e) {
+			throw new MojoExecutionException(e.getMessage(), e);
+		} catch (IOException e) {
+			throw new MojoExecutionException("Could not write launcher " + stub, e);
+		}
+		stub.setExecutable(true, false);
+	}
+
+	/**
+	 * Write the Info.plist file of the staged bundle.
+	 * 
+	 * @throws MojoExecutionException
+	 */
+	void refreshInfoPlist() throws MojoExecutionException {
+		writeInfoPlist(new File(contentsDir, "Info.plist"), files, bundleVmOptions);
+	}
+
+	/**
+	 * @return the source files of the staged dependencies, the project's own artifact first
+	 */
+	Set getDependencyFiles() {
+		return stagedArtifacts.keySet();
+	}
+
+	PhaseTimings getPhaseTimings() {
+		return timings;
+	}
+
+	File getIconFile() {
+		return iconFile;
+	}
+
+	boolean isExtractNativeLibraries() {
+		return extractNativeLibraries;
+	}
+
+	/**
+	 * @return the Info.plist template if it is a file on disk, <code>null</code> if it is loaded from the classpath
+	 */
+	File getDictionaryTemplateFile() {
+		if (!isCustomDictionary()) {
+			return null;
+		}
+		File template = new File(dictionaryFile);
+		return template.isFile() ? template : null;
+	}
+
+	/**
+	 * @return <code>true</code> if Info.plist is merged from a Velocity template rather than generated
+	 */
+	private boolean isCustomDictionary() {
+		return dictionaryFile != null && dictionaryFile.trim().length() > 0 && !DEFAULT_DICTIONARY_FILE.equals(dictionaryFile);
+	}
+
+	private List getInfoPlistEntries() {
+		return infoPlistEntries == null ? Collections.EMPTY_LIST : infoPlistEntries;
+	}
+
+	public void contextualize(Context context) throws ContextException {
+		container = (PlexusContainer) context.get(PlexusConstants.PLEXUS_KEY);
+	}
+
+	/**
+	 * Look up the Velocity component the first time a template is merged, so that builds using the generated Info.plist never start an engine.
+	 * 
+	 * @return the Velocity component
+	 * @throws MojoExecutionException
+	 */
+	private VelocityComponent getVelocity() throws MojoExecutionException {
+		if (velocity == null) {
+			try {
+				velocity = (VelocityComponent) container.lookup(VelocityComponent.ROLE);
+			} catch (ComponentLookupException e) {
+				throw new MojoExecutionException("Could not look up the Velocity component", e);
+			}
+		}
+		return velocity;
+	}
+
+	List getAdditionalResources() {
+		return additionalResources == null ? Collections.EMPTY_LIST : additionalResources;
+	}
+
+	/**
+	 * @return the name of the executable in Contents/MacOS, which CFBundleExecutable refers to
+	 */
+	private String getExecutableName() {
+		return generateLauncher || !keepJavaApplicationStubName ? bundleName : javaApplicationStub.getName();
+	}
+
+	/**
+	 * @param files
+	 *            A list of file names of the jar files in $JAVAROOT
+	 * @return the classpath of the application, the jars in $JAVAROOT followed by the additionalClasspath
+	 */
+	private List getClasspath(List files) {
+		List classpath = new ArrayList();
+		for (int i = 0; i < files.size(); i++) {
+			classpath.add("$JAVAROOT/" + files.get(i));
+		}
+		if (additionalClasspath != null) {
+			classpath.addAll(additionalClasspath);
+		}
+		return classpath;
+	}
+
+	boolean isOsX() {
+		return System.getProperty("mrj.version") != null;
+	}
+
+	/**
+	 * Copy all dependencies into the $JAVAROOT directory
+	 * 
+	 * @param javaDirectory
+	 *            where to put jar files
+	 * @return A list of file names added
+	 * @throws MojoExecutionException
+	 */
+	private List copyDependencies(File javaDirectory) throws MojoExecutionException {
+
+		ArtifactRepositoryLayout layout = new DefaultRepositoryLayout();
+
+		List list = new ArrayList();
 
 		File repoDirectory = new File(javaDirectory, "repo");
 		repoDirectory.mkdirs();
 
 		// First, copy the project's own artifact
 		File artifactFile = project.getArtifact().getFile();
+		if (artifactFile == null) {
+			throw new MojoExecutionException("The project artifact has not been built, run the package phase first, e.g. mvn package "
+					+ "osxappbundle:watch");
+		}
 		list.add(repoDirectory.getName() + "/" + layout.pathOf(project.getArtifact()));
+		stagedArtifacts.put(artifactFile, new File(repoDirectory, layout.pathOf(project.getArtifact())));
 
 		try {
 			FileUtils.copyFile(artifactFile, new File(repoDirectory, layout.pathOf(project.getArtifact())));
@@ -512,14 +1385,90 @@ public class CreateApplicationBundleMojo extends AbstractMojo {
 			} catch (IOException e) {
 				throw new MojoExecutionException("Error copying file " + file + " into " + javaDirectory, e);
 			}
+			stagedArtifacts.put(file, dest);
 
 			list.add(repoDirectory.getName() + "/" + layout.pathOf(artifact));
+
+			if (artifact.getDependencyTrail() != null) {
+				StringBuffer trail = new StringBuffer();
+				for (Iterator j = artifact.getDependencyTrail().iterator(); j.hasNext();) {
+					trail.append(j.next());
+					if (j.hasNext()) {
+						trail.append(" -> ");
+					}
+				}
+				dependencyTrails.put(repoDirectory.getName() + "/" + layout.pathOf(artifact), trail.toString());
+			}
 		}
 
 		return list;
 
 	}
 
+	/**
+	 * Extract native libraries from the staged jars into the native library directory of the bundle
+	 * 
+	 * @param javaDirectory
+	 *            the $JAVAROOT directory holding the staged jars
+	 * @param files
+	 *            A list of file names of the jar files in $JAVAROOT
+	 * @param contentsDir
+	 *            the Contents directory of the bundle
+	 * @return the JVM options pointing the JVM and known libraries at the extracted files, or <code>null</code> if nothing was extracted
+	 * @throws MojoExecutionException
+	 */
+	private String extractNativeLibraries(File javaDirectory, List files, File contentsDir) throws MojoExecutionException {
+		File libraryDirectory = new File(contentsDir, nativeLibraryDirectory);
+
+		NativeLibraryExtractor extractor = new NativeLibraryExtractor(toArray(nativeLibraryIncludes), toArray(nativeLibraryExcludes));
+
+		for (Iterator i = files.iterator(); i.hasNext();) {
+			File jar = new File(javaDirectory, (String) i.next());
+			try {
+				List extracted = extractor.extract(jar, libraryDirectory);
+				if (!extracted.isEmpty()) {
+					getLog().info("Extracted native libraries " + extracted + " from " + jar.getName());
+				}
+			} catch (IOException e) {
+				throw new MojoExecutionException("Error extracting native libraries from " + jar + " into " + libraryDirectory, e);
+			}
+		}
+
+		if (!extractor.getSkippedEntries().isEmpty()) {
+			throw new MojoExecutionException("Found native libraries with the same name as an already extracted one: " + extractor.getSkippedEntries()
+					+ ". Use nativeLibraryIncludes or nativeLibraryExcludes to choose the one to bundle.");
+		}
+
+		Map properties = extractor.getSystemProperties("$APP_PACKAGE/Contents/" + nativeLibraryDirectory);
+		if (properties.isEmpty()) {
+			return null;
+		}
+
+		StringBuffer options = new StringBuffer();
+		for (Iterator i = properties.entrySet().iterator(); i.hasNext();) {
+			Map.Entry property = (Map.Entry) i.next();
+			if (options.length() > 0) {
+				options.append(' ');
+			}
+			options.append("-D").append(property.getKey()).append('=').append(property.getValue());
+		}
+		return options.toString();
+	}
+
+	private static String joinOptions(String options, String moreOptions) {
+		if (moreOptions == null || moreOptions.length() == 0) {
+			return options;
+		}
+		if (options == null || options.trim().length() == 0) {
+			return moreOptions;
+		}
+		return options.trim() + " " + moreOptions;
+	}
+
+	private static String[] toArray(List list) {
+		return list == null ? null : (String[]) list.toArray(new String[list.size()]);
+	}
+
 	/**
 	 * Writes an Info.plist file describing this bundle.
 	 * 
@@ -527,63 +1476,136 @@ public class CreateApplicationBundleMojo extends AbstractMojo {
 	 *            The file to write Info.plist contents to
 	 * @param files
 	 *            A list of file names of the jar files to add in $JAVAROOT
+	 * @param bundleVmOptions
+	 *            The value of VMOptions, may be <code>null</code>
+	 * @throws MojoExecutionException
+	 */
+	private void writeInfoPlist(File infoPlist, List files, String bundleVmOptions) throws MojoExecutionException {
+		List classpath = getClasspath(files);
+
+		String cfBundleExecutable = getExecutableName();
+		String cfBundleIconFile = iconFile == null ? "GenericJavaApp.icns" : iconFile.getName();
+
+		if (isCustomDictionary()) {
+			if (!getInfoPlistEntries().isEmpty()) {
+				getLog().warn("infoPlistEntries are ignored, the custom dictionaryFile " + dictionaryFile + " is used for Info.plist");
+			}
+			mergeInfoPlist(infoPlist, classpath, cfBundleExecutable, cfBundleIconFile, bundleVmOptions);
+			return;
+		}
+
+		PlistDict root = new PlistDict();
+		root.put("CFBundleName", bundleName);
+		root.put("CFBundleIdentifier", bundleIdentifier);
+		root.put("CFBundleVersion", version);
+		root.put("CFBundleAllowMixedLocalizations", true);
+		root.put("CFBundleExecutable", cfBundleExecutable);
+		root.put("CFBundleDevelopmentRegion", "English");
+		root.put("CFBundlePackageType", "APPL");
+		root.put("CFBundleSignature", "????");
+		root.put("CFBundleInfoDictionaryVersion", "6.0");
+		root.put("CFBundleIconFile", cfBundleIconFile);
+
+		PlistDict java = root.getDict("Java");
+		java.put("MainClass", mainClass);
+		java.put("JVMVersion", jvmVersion);
+		PlistArray classpathArray = new PlistArray();
+		for (Iterator i = classpath.iterator(); i.hasNext();) {
+			classpathArray.add((String) i.next());
+		}
+		java.put("ClassPath", classpathArray);
+		java.put("VMOptions", bundleVmOptions);
+
+		for (Iterator i = getInfoPlistEntries().iterator(); i.hasNext();) {
+			InfoPlistEntry entry = (InfoPlistEntry) i.next();
+			try {
+				PlistValue value = entry.toPlistValue();
+				String[] path = entry.getKeyPath();
+				PlistDict dict = root;
+				for (int j = 0; j < path.length - 1; j++) {
+					dict = dict.getDict(path[j]);
+				}
+				dict.put(path[path.length - 1], value);
+			} catch (IllegalArgumentException e) {
+				throw new MojoExecutionException("Invalid Info.plist entry " + entry.getKey() + ": " + e.getMessage(), e);
+			}
+		}
+
+		try {
+			Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(infoPlist), "utf-8"));
+			try {
+				PlistWriter.write(root, writer);
+			} finally {
+				writer.close();
+			}
+		} catch (IllegalArgumentException e) {
+			throw new MojoExecutionException("Could not write Info.plist: " + e.getMessage(), e);
+		} catch (IOException e) {
+			throw new MojoExecutionException("Could not write Info.plist to file " + infoPlist, e);
+		}
+	}
+
+	/**
+	 * Merges the custom dictionaryFile template into Info.plist.
+	 * 
+	 * @param infoPlist
+	 *            The file to write Info.plist contents to
+	 * @param classpath
+	 *            The entries of the ClassPath array
 	 * @throws MojoExecutionException
 	 */
-	private void writeInfoPlist(File infoPlist, List files) throws MojoExecutionException {
+	private void mergeInfoPlist(File infoPlist, List classpath, String cfBundleExecutable, String cfBundleIconFile, String bundleVmOptions)
+			throws MojoExecutionException {
 
 		VelocityContext velocityContext = new VelocityContext();
 
 		velocityContext.put("mainClass", mainClass);
-		if (keepJavaApplicationStubName) {
-			velocityContext.put("cfBundleExecutable", javaApplicationStub.getName());
-		} else {
-			velocityContext.put("cfBundleExecutable", bundleName);
-		}
+		velocityContext.put("cfBundleExecutable", cfBundleExecutable);
 
 		velocityContext.put("bundleIdentifier", bundleIdentifier);
-		velocityContext.put("vmOptions", vmOptions);
+		velocityContext.put("vmOptions", bundleVmOptions);
 		velocityContext.put("bundleName", bundleName);
 
-		velocityContext.put("iconFile", iconFile == null ? "GenericJavaApp.icns" : iconFile.getName());
+		velocityContext.put("iconFile", cfBundleIconFile);
 
 		velocityContext.put("version", version);
 
 		velocityContext.put("jvmVersion", jvmVersion);
 
-		StringBuffer jarFilesBuffer = new StringBuffer();
-
-		jarFilesBuffer.append("<array>");
-		for (int i = 0; i < files.size(); i++) {
-			String name = (String) files.get(i);
-			jarFilesBuffer.append("<string>");
-			jarFilesBuffer.append("$JAVAROOT/").append(name);
-			jarFilesBuffer.append("</string>");
+		try {
+			StringBuffer jarFilesBuffer = new StringBuffer();
 
-		}
-		if (additionalClasspath != null) {
-			for (int i = 0; i < additionalClasspath.size(); i++) {
-				String pathElement = (String) additionalClasspath.get(i);
+			jarFilesBuffer.append("<array>");
+			for (Iterator i = classpath.iterator(); i.hasNext();) {
 				jarFilesBuffer.append("<string>");
-				jarFilesBuffer.append(pathElement);
+				jarFilesBuffer.append(PlistWriter.escape((String) i.next()));
 				jarFilesBuffer.append("</string>");
-
 			}
-		}
-		jarFilesBuffer.append("</array>");
+			jarFilesBuffer.append("</array>");
 
-		velocityContext.put("classpath", jarFilesBuffer.toString());
+			velocityContext.put("classpath", jarFilesBuffer.toString());
 
-		try {
+			VelocityEngine engine = getVelocity().getEngine();
 
-			String encoding = detectEncoding(dictionaryFile, velocityContext);
+			// Merge as utf-8 first to find the declared encoding, and only merge again if it is another one
+			StringWriter merged = new StringWriter();
+			engine.mergeTemplate(dictionaryFile, "utf-8", velocityContext, merged);
 
-			getLog().debug("Detected encoding " + encoding + " for dictionary file " + dictionaryFile);
+			String encoding = new DefaultEncodingDetector().detectXmlEncoding(new ByteArrayInputStream(merged.toString().getBytes("utf-8")));
 
-			Writer writer = new OutputStreamWriter(new FileOutputStream(infoPlist), encoding);
+			getLog().debug("Detected encoding " + encoding + " for dictionary file " + dictionaryFile);
 
-			velocity.getEngine().mergeTemplate(dictionaryFile, encoding, velocityContext, writer);
+			if (!"utf-8".equalsIgnoreCase(encoding)) {
+				merged = new StringWriter();
+				engine.mergeTemplate(dictionaryFile, encoding, velocityContext, merged);
+			}
 
-			writer.close();
+			Writer writer = new OutputStreamWriter(new FileOutputStream(infoPlist), encoding);
+			try {
+				writer.write(merged.toString());
+			} finally {
+				writer.close();
+			}
 		} catch (IOException e) {
 			throw new MojoExecutionException("Could not write Info.plist to file " + infoPlist, e);
 		} catch (ParseErrorException e) {
@@ -592,18 +1614,14 @@ public class CreateApplicationBundleMojo extends AbstractMojo {
 			throw new MojoExecutionException("Could not find resource for template " + dictionaryFile, e);
 		} catch (MethodInvocationException e) {
 			throw new MojoExecutionException("MethodInvocationException occured merging Info.plist template " + dictionaryFile, e);
+		} catch (MojoExecutionException e) {
+			throw e;
 		} catch (Exception e) {
 			throw new MojoExecutionException("Exception occured merging Info.plist template " + dictionaryFile, e);
 		}
 
 	}
 
-	private String detectEncoding(String dictionaryFile, VelocityContext velocityContext) throws Exception {
-		StringWriter sw = new StringWriter();
-		velocity.getEngine().mergeTemplate(dictionaryFile, "utf-8", velocityContext, sw);
-		return new DefaultEncodingDetector().detectXmlEncoding(new ByteArrayInputStream(sw.toString().getBytes("utf-8")));
-	}
-
 	/**
 	 * Copies given resources to the build directory.
 	 * 
@@ -613,59 +1631,167 @@ public class CreateApplicationBundleMojo extends AbstractMojo {
 	 *             In case af a resource copying error.
 	 */
 	private void copyResources(List fileSets) throws MojoExecutionException {
-		final String[] emptyStrArray = {};
+		final Path destinationDirectory = buildDirectory.toPath();
 
 		for (Iterator it = fileSets.iterator(); it.hasNext();) {
 			FileSet fileSet = (FileSet) it.next();
 
-			File resourceDirectory = new File(fileSet.getDirectory());
-			if (!resourceDirectory.isAbsolute()) {
-				resourceDirectory = new File(project.getBasedir(), resourceDirectory.getPath());
-			}
+			File resourceDirectory = resolveResourceDirectory(fileSet);
 
 			if (!resourceDirectory.exists()) {
 				getLog().info("Additional resource directory does not exist: " + resourceDirectory);
 				continue;
 			}
 
-			DirectoryScanner scanner = new DirectoryScanner();
-
-			scanner.setBasedir(resourceDirectory);
-			if (fileSet.getIncludes() != null && !fileSet.getIncludes().isEmpty()) {
-				scanner.setIncludes((String[]) fileSet.getIncludes().toArray(emptyStrArray));
-			} else {
-				scanner.setIncludes(DEFAULT_INCLUDES);
+			// Matched files are copied while the tree is walked, no list of the whole tree is built
+			long copied;
+			try {
+				copied = getResourceWalker(fileSet).walk(resourceDirectory, new ResourceWalker.Visitor() {
+					private Path createdDirectory;
+
+					public void visit(Path source, String path) throws IOException {
+						Path destination = destinationDirectory.resolve(path);
+						Path parent = destination.getParent();
+						if (!parent.equals(createdDirectory)) {
+							Files.createDirectories(parent);
+							createdDirectory = parent;
+						}
+						Files.copy(source, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+					}
+				});
+			} catch (IOException e) {
+				throw new MojoExecutionException("Error copying additional resources from " + resourceDirectory, e);
 			}
 
-			if (fileSet.getExcludes() != null && !fileSet.getExcludes().isEmpty()) {
-				scanner.setExcludes((String[]) fileSet.getExcludes().toArray(emptyStrArray));
-			}
+			getLog().info("Copied " + copied + " additional resource" + (copied != 1 ? "s" : ""));
+		}
+	}
 
-			if (fileSet.isUseDefaultExcludes()) {
-				scanner.addDefaultExcludes();
-			}
+	/**
+	 * @param fileSet
+	 *            an additional resource FileSet
+	 * @return a walker with the includes and excludes of the FileSet compiled
+	 */
+	private ResourceWalker getResourceWalker(FileSet fileSet) {
+		ResourceWalker walker = (ResourceWalker) resourceWalkers.get(fileSet);
+		if (walker == null) {
+			walker = createResourceWalker(fileSet);
+			resourceWalkers.put(fileSet, walker);
+		}
+		return walker;
+	}
 
-			scanner.scan();
+	private ResourceWalker createResourceWalker(FileSet fileSet) {
+		List includes = fileSet.getIncludes() != null && !fileSet.getIncludes().isEmpty() ? fileSet.getIncludes() : Arrays.asList(DEFAULT_INCLUDES);
 
-			List includedFiles = Arrays.asList(scanner.getIncludedFiles());
+		List excludes = new ArrayList();
+		if (fileSet.getExcludes() != null) {
+			excludes.addAll(fileSet.getExcludes());
+		}
+		if (fileSet.isUseDefaultExcludes()) {
+			excludes.addAll(Arrays.asList(DirectoryScanner.DEFAULTEXCLUDES));
+		}
 
-			getLog().info("Copying " + includedFiles.size() + " additional resource" + (includedFiles.size() > 1 ? "s" : ""));
+		return new ResourceWalker(includes, excludes);
+	}
 
-			for (Iterator j = includedFiles.iterator(); j.hasNext();) {
-				String destination = (String) j.next();
-				File source = new File(resourceDirectory, destination);
-				File destinationFile = new File(buildDirectory, destination);
+	/**
+	 * @param fileSet
+	 *            an additional resource FileSet
+	 * @return the directory of the FileSet, resolved against the project base directory
+	 */
+	File resolveResourceDirectory(FileSet fileSet) {
+		File resourceDirectory = new File(fileSet.getDirectory());
+		if (!resourceDirectory.isAbsolute()) {
+			resourceDirectory = new File(project.getBasedir(), resourceDirectory.getPath());
+		}
+		return resourceDirectory;
+	}
+
+	/**
+	 * Check a single path against the includes and excludes of a FileSet, the same way copyResources does.
+	 * 
+	 * @param fileSet
+	 *            an additional resource FileSet
+	 * @param path
+	 *            a path relative to the directory of the FileSet
+	 * @return <code>true</code> if the path is part of the FileSet
+	 */
+	boolean isIncludedResource(FileSet fileSet, String path) {
+		return getResourceWalker(fileSet).isIncluded(path.replace(File.separatorChar, '/'));
+	}
 
-				if (!destinationFile.getParentFile().exists()) {
-					destinationFile.getParentFile().mkdirs();
+	/**
+	 * Copy one additional resource into the build directory.
+	 * 
+	 * @param source
+	 *            the resource file
+	 * @param destination
+	 *            the path of the resource relative to the build directory
+	 * @throws MojoExecutionException
+	 *             In case af a resource copying error.
+	 */
+	void copyResource(File source, String destination) throws MojoExecutionException {
+		File destinationFile = new File(buildDirectory, destination);
+
+		if (!destinationFile.getParentFile().exists()) {
+			destinationFile.getParentFile().mkdirs();
+		}
+
+		try {
+			FileUtils.copyFile(source, destinationFile);
+		} catch (IOException e) {
+			throw new MojoExecutionException("Error copying additional resource " + source, e);
+		}
+	}
+
+	/**
+	 * Remove an additional resource from the build directory. When the resource was a directory, all files of the FileSet below it are removed,
+	 * along with the directories left empty.
+	 * 
+	 * @param fileSet
+	 *            the additional resource FileSet the resource belonged to
+	 * @param destination
+	 *            the path of the resource relative to the build directory
+	 * @throws MojoExecutionException
+	 *             if a directory can't be removed
+	 */
+	void deleteResource(final FileSet fileSet, String destination) throws MojoExecutionException {
+		File destinationFile = new File(buildDirectory, destination);
+		if (destinationFile.isFile()) {
+			if (isIncludedResource(fileSet, destination) && !destinationFile.delete()) {
+				getLog().warn("Could not delete " + destinationFile);
+			}
+			return;
+		}
+		if (!destinationFile.isDirectory()) {
+			return;
+		}
+
+		final Path root = buildDirectory.toPath();
+		try {
+			Files.walkFileTree(destinationFile.toPath(), new SimpleFileVisitor<Path>() {
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+					if (isIncludedResource(fileSet, root.relativize(file).toString())) {
+						Files.delete(file);
+					}
+					return FileVisitResult.CONTINUE;
 				}
 
-				try {
-					FileUtils.copyFile(source, destinationFile);
-				} catch (IOException e) {
-					throw new MojoExecutionException("Error copying additional resource " + source, e);
+				public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+					if (e != null) {
+						throw e;
+					}
+					try {
+						Files.delete(dir);
+					} catch (DirectoryNotEmptyException notEmpty) {
+						// holds files of other resources
+					}
+					return FileVisitResult.CONTINUE;
 				}
-			}
+			});
+		} catch (IOException e) {
+			throw new MojoExecutionException("Could not delete " + destinationFile, e);
 		}
 	}
 
@@ -0,0 +1,202 @@
+package org.codehaus.mojo.osxappbundle;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.codehaus.mojo.osxappbundle.plist.PlistArray;
+import org.codehaus.mojo.osxappbundle.plist.PlistBoolean;
+import org.codehaus.mojo.osxappbundle.plist.PlistDate;
+import org.codehaus.mojo.osxappbundle.plist.PlistInteger;
+import org.codehaus.mojo.osxappbundle.plist.PlistReal;
+import org.codehaus.mojo.osxappbundle.plist.PlistString;
+import org.codehaus.mojo.osxappbundle.plist.PlistValue;
+
+/**
+ * A key of Info.plist set from the plugin configuration, either a new key or a new value for one the plugin
+ * generates.
+ */
+public class InfoPlistEntry
+{
+
+    /**
+     * The key. Keys of nested dictionaries are separated by '/', e.g.
+     * <code>Java/Properties/apple.laf.useScreenMenuBar</code>.
+     *
+     * @parameter
+     * @required
+     */
+    private String key;
+
+    /**
+     * The type of the value: <code>string</code>, <code>boolean</code>, <code>integer</code>, <code>real</code> or
+     * <code>date</code> (ISO 8601, like <code>2008-08-09T12:00:00Z</code>). Default is string.
+     *
+     * @parameter
+     */
+    private String type;
+
+    /**
+     * The value.
+     *
+     * @parameter
+     */
+    private String value;
+
+    /**
+     * The values of an array, each of the configured type. Set instead of value.
+     *
+     * @parameter
+     */
+    private List values;
+
+    public String getKey()
+    {
+        return key;
+    }
+
+    public void setKey( String key )
+    {
+        this.key = key;
+    }
+
+    public String getType()
+    {
+        return type;
+    }
+
+    public void setType( String type )
+    {
+        this.type = type;
+    }
+
+    public String getValue()
+    {
+        return value;
+    }
+
+    public void setValue( String value )
+    {
+        this.value = value;
+    }
+
+    public List getValues()
+    {
+        return values;
+    }
+
+    public void setValues( List values )
+    {
+        this.values = values;
+    }
+
+    /**
+     * @return The keys from the root dictionary down to this one
+     */
+    public String[] getKeyPath()
+    {
+        return key.split( "/" );
+    }
+
+    /**
+     * Convert the configured value to its plist type.
+     *
+     * @return The typed value, an array if values are set
+     * @throws IllegalArgumentException If the entry is incomplete or a value doesn't parse as the configured type
+     */
+    public PlistValue toPlistValue()
+    {
+        if ( key == null || key.length() == 0 )
+        {
+            throw new IllegalArgumentException( "An Info.plist entry needs a key" );
+        }
+        if ( values != null )
+        {
+            PlistArray array = new PlistArray();
+            for ( Iterator i = values.iterator(); i.hasNext(); )
+            {
+                array.add( convert( String.valueOf( i.next() ) ) );
+            }
+            return array;
+        }
+        if ( value == null )
+        {
+            throw new IllegalArgumentException( "The Info.plist entry " + key + " needs a value or values" );
+        }
+        return convert( value );
+    }
+
+    private PlistValue convert( String text )
+    {
+        String trimmed = text.trim();
+        if ( type == null || "string".equals( type ) )
+        {
+            return new PlistString( text );
+        }
+        if ( "boolean".equals( type ) )
+        {
+            if ( !"true".equals( trimmed ) && !"false".equals( trimmed ) )
+            {
+                throw new IllegalArgumentException( "The Info.plist entry " + key + " must be true or false, not " + text );
+            }
+            return PlistBoolean.valueOf( Boolean.valueOf( trimmed ).booleanValue() );
+        }
+        try
+        {
+            if ( "integer".equals( type ) )
+            {
+                return new PlistInteger( Long.parseLong( trimmed ) );
+            }
+            if ( "real".equals( type ) )
+            {
+                return new PlistReal( Double.parseDouble( trimmed ) );
+            }
+        }
+        catch ( NumberFormatException e )
+        {
+            throw new IllegalArgumentException( "The Info.plist entry " + key + " must be a number of type " + type
+                + ", not " + text );
+        }
+        if ( "date".equals( type ) )
+        {
+            SimpleDateFormat format = new SimpleDateFormat( "yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ENGLISH );
+            format.setTimeZone( TimeZone.getTimeZone( "UTC" ) );
+            format.setLenient( false );
+            try
+            {
+                return new PlistDate( format.parse( trimmed ) );
+            }
+            catch ( ParseException e )
+            {
+                throw new IllegalArgumentException( "The Info.plist entry " + key
+                    + " must be a date like 2008-08-09T12:00:00Z, not " + text );
+            }
+        }
+        throw new IllegalArgumentException( "Unknown type " + type + " of Info.plist entry " + key
+            + ", supported types are string, boolean, integer, real and date" );
+    }
+
+    public String toString()
+    {
+        return key + "(" + ( type == null ? "string" : type ) + ")=" + ( values != null ? values : value );
+    }
+}
@@ -0,0 +1,208 @@
+package org.codehaus.mojo.osxappbundle;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Records the wall time and, if asked to, the peak heap use of each phase of a bundle build. Between two garbage
+ * collections the used heap only grows, so its peak is the larger of the heap used right before each collection during
+ * the phase, which the collectors report in their notifications, and the heap used at the end of the phase. It covers
+ * everything the JVM does during the phase, not just this build, so it is only meant for the performance tests.
+ * Notifications arrive on another thread and may miss a collection in the last moments of a phase.
+ */
+public class PhaseTimings
+{
+
+    private final Map<String, long[]> phases = new LinkedHashMap<String, long[]>();
+
+    private final boolean heapPeaks;
+
+    private String current;
+
+    private long start;
+
+    /**
+     * The largest heap use before a collection during the current phase.
+     */
+    private long collectedPeak;
+
+    private final NotificationListener collections = new NotificationListener()
+    {
+        public void handleNotification( Notification notification, Object handback )
+        {
+            if ( GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals( notification.getType() ) )
+            {
+                GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from( (CompositeData) notification.getUserData() );
+                collected( info.getGcInfo().getMemoryUsageBeforeGc() );
+            }
+        }
+    };
+
+    /**
+     * Record wall time only.
+     */
+    public PhaseTimings()
+    {
+        this( false );
+    }
+
+    /**
+     * @param heapPeaks Whether to record peak heap as well, listening to the garbage collectors while a phase runs
+     */
+    public PhaseTimings( boolean heapPeaks )
+    {
+        this.heapPeaks = heapPeaks;
+    }
+
+    /**
+     * Start timing a phase, ending the current one.
+     *
+     * @param phase The name of the phase
+     */
+    public void start( String phase )
+    {
+        end();
+        if ( heapPeaks )
+        {
+            synchronized ( this )
+            {
+                collectedPeak = 0;
+            }
+            listen( true );
+        }
+        current = phase;
+        start = System.nanoTime();
+    }
+
+    /**
+     * End the current phase, if any.
+     */
+    public void end()
+    {
+        if ( current != null )
+        {
+            long millis = ( System.nanoTime() - start ) / 1000000L;
+            long peak = -1;
+            if ( heapPeaks )
+            {
+                listen( false );
+                synchronized ( this )
+                {
+                    peak = Math.max( collectedPeak, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() );
+                }
+            }
+            phases.put( current, new long[] { millis, peak } );
+            current = null;
+        }
+    }
+
+    /**
+     * @return The phases in the order they ran, mapped to their wall time in milliseconds and peak heap in bytes, -1 if
+     *         not recorded
+     */
+    public Map<String, long[]> getPhases()
+    {
+        return phases;
+    }
+
+    public String toString()
+    {
+        StringBuffer buffer = new StringBuffer();
+        for ( Iterator<Map.Entry<String, long[]>> i = phases.entrySet().iterator(); i.hasNext(); )
+        {
+            Map.Entry<String, long[]> phase = i.next();
+            buffer.append( phase.getKey() ).append( ": " ).append( phase.getValue()[0] ).append( " ms" );
+            if ( heapPeaks )
+            {
+                buffer.append( ", " ).append( phase.getValue()[1] / ( 1024 * 1024 ) ).append( " MB peak heap" );
+            }
+            if ( i.hasNext() )
+            {
+                buffer.append( ", " );
+            }
+        }
+        return buffer.toString();
+    }
+
+    private synchronized void collected( Map<String, MemoryUsage> beforeCollection )
+    {
+        Set<String> heapPools = new HashSet<String>();
+        for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+        {
+            if ( pool.getType() == MemoryType.HEAP )
+            {
+                heapPools.add( pool.getName() );
+            }
+        }
+
+        long used = 0;
+        for ( Map.Entry<String, MemoryUsage> pool : beforeCollection.entrySet() )
+        {
+            if ( heapPools.contains( pool.getKey() ) )
+            {
+                used += pool.getValue().getUsed();
+            }
+        }
+        collectedPeak = Math.max( collectedPeak, used );
+    }
+
+    private void listen( boolean listen )
+    {
+        for ( GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans() )
+        {
+            if ( !( collector instanceof NotificationEmitter ) )
+            {
+                continue;
+            }
+            NotificationEmitter emitter = (NotificationEmitter) collector;
+            if ( listen )
+            {
+                emitter.addNotificationListener( collections, null, null );
+            }
+            else
+            {
+                try
+                {
+                    emitter.removeNotificationListener( collections );
+                }
+                catch ( ListenerNotFoundException e )
+                {
+                    // not listening to this one
+                }
+            }
+        }
+    }
+}
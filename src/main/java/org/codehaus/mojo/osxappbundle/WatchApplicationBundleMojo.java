@@ -0,0 +1,173 @@
+package org.codehaus.mojo.osxappbundle;
+
+/*
+ * Copyright 2001-2008 The Codehaus. Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.mojo.osxappbundle.watch.BundleWatcher;
+
+/**
+ * Stage the Application Bundle once and keep it up to date while developing. The project artifact, the dependencies, the icon, a custom Info.plist
+ * template and the additional resources are watched, and only what changed is copied into the bundle again. No zip or disk image is created. The set of
+ * dependencies is resolved when the goal starts; restart it after changing the pom.
+ * <p>
+ * The JDK on OS X has no native file notifications and only notices changes every two seconds or so. Set
+ * <code>watchPollInterval</code> to scan the watched files more often.
+ * 
+ * @goal watch
+ * @requiresDependencyResolution runtime
+ * @threadSafe
+ */
+public class WatchApplicationBundleMojo extends CreateApplicationBundleMojo {
+
+	/**
+	 * Milliseconds without further changes to wait for before a batch of changes is applied to the bundle.
+	 * 
+	 * @parameter expression="${watchDebounce}" default-value="300"
+	 */
+	private long watchDebounce;
+
+	/**
+	 * Milliseconds between scans of the watched files. With the default of 0 the file system notifies the goal of changes, which on OS X takes
+	 * up to two seconds. A short interval gives sub-second updates there, at the cost of walking the additional resources on every scan.
+	 * 
+	 * @parameter expression="${watchPollInterval}" default-value="0"
+	 */
+	private long watchPollInterval;
+
+	/**
+	 * Stage the bundle, then apply changes to it until the build is interrupted.
+	 * 
+	 * @throws MojoExecutionException
+	 *             If the bundle can't be staged or the watched files can't be registered.
+	 */
+	public void execute() throws MojoExecutionException {
+
+		stageBundle();
+
+		BundleWatcher watcher;
+		try {
+			watcher = new BundleWatcher(watchPollInterval);
+			for (Iterator i = getDependencyFiles().iterator(); i.hasNext();) {
+				watcher.watchFile((File) i.next());
+			}
+			if (getIconFile() != null) {
+				watcher.watchFile(getIconFile());
+			}
+			if (getDictionaryTemplateFile() != null) {
+				watcher.watchFile(getDictionaryTemplateFile());
+			}
+			for (Iterator i = getAdditionalResources().iterator(); i.hasNext();) {
+				File resourceDirectory = resolveResourceDirectory((FileSet) i.next());
+				if (resourceDirectory.isDirectory()) {
+					watcher.watchTree(resourceDirectory);
+				}
+			}
+		} catch (IOException e) {
+			throw new MojoExecutionException("Could not watch the bundle sources for changes", e);
+		}
+
+		getLog().info("Watching for changes, press Ctrl-C to stop");
+
+		try {
+			while (true) {
+				Set changes = watcher.awaitChanges(watchDebounce);
+
+				long start = System.currentTimeMillis();
+				try {
+					applyChanges(changes);
+					getLog().info("Updated bundle with " + changes.size() + " change" + (changes.size() > 1 ? "s" : "") + " in "
+							+ (System.currentTimeMillis() - start) + " ms");
+				} catch (MojoExecutionException e) {
+					// Keep watching, the next change may well fix it
+					getLog().warn("Could not update bundle: " + e.getMessage(), e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			try {
+				watcher.close();
+			} catch (IOException e) {
+				getLog().debug("Could not close watch service", e);
+			}
+		}
+	}
+
+	/**
+	 * Apply a batch of changed files to the staged bundle.
+	 * 
+	 * @param changes
+	 *            the changed files
+	 * @throws MojoExecutionException
+	 */
+	void applyChanges(Set changes) throws MojoExecutionException {
+		boolean dependenciesChanged = false;
+		boolean templateChanged = false;
+
+		File iconFile = getIconFile() == null ? null : getIconFile().getAbsoluteFile();
+		File template = getDictionaryTemplateFile() == null ? null : getDictionaryTemplateFile().getAbsoluteFile();
+
+		for (Iterator i = changes.iterator(); i.hasNext();) {
+			File file = (File) i.next();
+
+			if (getDependencyFiles().contains(file)) {
+				// A rebuilt jar is deleted before it is written again, wait for the new one
+				if (file.exists() && copyDependency(file)) {
+					getLog().info("Updated " + file.getName());
+					dependenciesChanged = true;
+				}
+			} else if (file.equals(iconFile)) {
+				if (file.exists()) {
+					copyIcon();
+					getLog().info("Updated " + file.getName());
+				}
+			} else if (file.equals(template)) {
+				templateChanged = true;
+			} else {
+				applyResourceChange(file);
+			}
+		}
+
+		if (dependenciesChanged && isExtractNativeLibraries()) {
+			refreshNativeLibraries();
+			refreshLauncher();
+			templateChanged = true;
+		}
+
+		if (templateChanged) {
+			refreshInfoPlist();
+			getLog().info("Updated Info.plist");
+		}
+	}
+
+	private void applyResourceChange(File file) throws MojoExecutionException {
+		for (Iterator i = getAdditionalResources().iterator(); i.hasNext();) {
+			FileSet fileSet = (FileSet) i.next();
+			String resourceDirectory = resolveResourceDirectory(fileSet).getAbsolutePath() + File.separator;
+
+			if (file.getPath().startsWith(resourceDirectory)) {
+				String destination = file.getPath().substring(resourceDirectory.length());
+				if (file.isFile()) {
+					if (isIncludedResource(fileSet, destination)) {
+						copyResource(file, destination);
+						getLog().debug("Updated additional resource " + destination);
+					}
+				} else if (!file.exists()) {
+					// Also reported for a deleted directory, which isn't included itself
+					deleteResource(fileSet, destination);
+					getLog().debug("Removed additional resource " + destination);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package org.codehaus.mojo.osxappbundle.archive;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A compression format for tar archives of the bundle.
+ */
+public interface ArchiveFormat
+{
+    /**
+     * @return The file extension, also used as the type of the attached artifact, e.g. <code>tar.zst</code>
+     */
+    String getExtension();
+
+    /**
+     * Wrap a stream so that everything written to it is compressed.
+     *
+     * @param out The stream receiving the compressed data
+     * @param threads The number of threads the compressor may use
+     * @return The compressing stream, closing it closes <code>out</code>
+     * @throws IOException If the compressor can't be set up
+     */
+    OutputStream compress( OutputStream out, int threads )
+        throws IOException;
+
+    /**
+     * Wrap a stream so that reading from it returns the decompressed data.
+     *
+     * @param in The compressed data
+     * @return The decompressing stream, closing it closes <code>in</code>
+     * @throws IOException If the data doesn't start like this format
+     */
+    InputStream decompress( InputStream in )
+        throws IOException;
+}
@@ -0,0 +1,211 @@
+package org.codehaus.mojo.osxappbundle.archive;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
+
+/**
+ * Compresses to the .xz format on several threads. The input is cut into blocks that are compressed independently, and
+ * each block is written as a complete .xz stream of its own. The .xz format allows streams to be concatenated, and
+ * <code>xz</code> and <code>XZInputStream</code> decompress them as one. <code>xz -T</code> writes a single stream with
+ * several blocks instead, so the output differs from its output but decompresses the same. The number of threads is
+ * capped so that the encoders fit into half of the available heap.
+ */
+public class ParallelXZOutputStream
+    extends OutputStream
+{
+
+    private final OutputStream out;
+
+    private final LZMA2Options options;
+
+    private final int threads;
+
+    private final ExecutorService executor;
+
+    private final LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+
+    private byte[] block;
+
+    private int blockLength;
+
+    private boolean written;
+
+    private boolean closed;
+
+    public ParallelXZOutputStream( OutputStream out, LZMA2Options options, int threads )
+    {
+        this( out, options, threads, Math.max( 1 << 20, 3 * options.getDictSize() ) );
+    }
+
+    /**
+     * @param out The stream receiving the compressed data
+     * @param options The LZMA2 options of every block
+     * @param threads The maximum number of blocks compressed at the same time
+     * @param blockSize The number of uncompressed bytes per block
+     */
+    ParallelXZOutputStream( OutputStream out, LZMA2Options options, int threads, int blockSize )
+    {
+        this.out = out;
+        this.options = options;
+        this.threads = Math.max( 1, Math.min( threads, maxThreads( options, blockSize ) ) );
+        this.block = new byte[blockSize];
+        this.executor = Executors.newFixedThreadPool( this.threads, new ThreadFactory()
+        {
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, "xz-compressor" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+    }
+
+    public void write( int b )
+        throws IOException
+    {
+        write( new byte[] { (byte) b }, 0, 1 );
+    }
+
+    public void write( byte[] buffer, int offset, int length )
+        throws IOException
+    {
+        if ( closed )
+        {
+            throw new IOException( "Stream closed" );
+        }
+
+        while ( length > 0 )
+        {
+            int count = Math.min( length, block.length - blockLength );
+            System.arraycopy( buffer, offset, block, blockLength, count );
+            blockLength += count;
+            offset += count;
+            length -= count;
+
+            if ( blockLength == block.length )
+            {
+                submitBlock();
+            }
+        }
+    }
+
+    public void close()
+        throws IOException
+    {
+        if ( closed )
+        {
+            return;
+        }
+        closed = true;
+
+        try
+        {
+            try
+            {
+                if ( blockLength > 0 || !written )
+                {
+                    submitBlock();
+                }
+                while ( !pending.isEmpty() )
+                {
+                    writeCompleted();
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private void submitBlock()
+        throws IOException
+    {
+        final byte[] data = block;
+        final int length = blockLength;
+
+        pending.add( executor.submit( new Callable<byte[]>()
+        {
+            public byte[] call()
+                throws IOException
+            {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream( length / 4 + 64 );
+                XZOutputStream xz = new XZOutputStream( compressed, options );
+                xz.write( data, 0, length );
+                xz.finish();
+                return compressed.toByteArray();
+            }
+        } ) );
+        written = true;
+
+        // Keep every thread busy but don't run ahead of the output
+        if ( pending.size() >= threads )
+        {
+            writeCompleted();
+        }
+
+        block = new byte[data.length];
+        blockLength = 0;
+    }
+
+    private void writeCompleted()
+        throws IOException
+    {
+        try
+        {
+            out.write( pending.removeFirst().get() );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while compressing" );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof IOException )
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException( "Error compressing block", e.getCause() );
+        }
+    }
+
+    private static int maxThreads( LZMA2Options options, int blockSize )
+    {
+        // Encoder memory plus the uncompressed and (at worst) compressed block
+        long perThread = options.getEncoderMemoryUsage() * 1024L + 2L * blockSize;
+        return (int) Math.max( 1, Runtime.getRuntime().maxMemory() / 2 / perThread );
+    }
+}
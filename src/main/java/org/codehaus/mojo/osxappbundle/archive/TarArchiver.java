@@ -0,0 +1,322 @@
+package org.codehaus.mojo.osxappbundle.archive;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+
+/**
+ * Writes a directory tree into a compressed tar archive. Unix permissions and symbolic links are kept, which zip
+ * doesn't do well, and entries are written in name order so the archive doesn't depend on the file system.
+ */
+public class TarArchiver
+{
+
+    private static final ArchiveFormat[] FORMATS = { new ZstdFormat(), new XzFormat() };
+
+    private final ArchiveFormat format;
+
+    private final int threads;
+
+    public TarArchiver( ArchiveFormat format, int threads )
+    {
+        this.format = format;
+        this.threads = threads;
+    }
+
+    /**
+     * @param extension The extension of an archive format, e.g. <code>tar.zst</code>
+     * @return The format, or <code>null</code> if there is none with that extension
+     */
+    public static ArchiveFormat getFormat( String extension )
+    {
+        for ( int i = 0; i < FORMATS.length; i++ )
+        {
+            if ( FORMATS[i].getExtension().equalsIgnoreCase( extension ) )
+            {
+                return FORMATS[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Archive a directory. The directory itself is the top level entry of the archive.
+     *
+     * @param directory The directory to archive
+     * @param executables Entry names that are made executable whatever their permissions on disk are
+     * @param destFile The archive to write
+     * @throws IOException If the tree can't be read or the archive can't be written
+     */
+    public void createArchive( File directory, Set<String> executables, File destFile )
+        throws IOException
+    {
+        destFile.getParentFile().mkdirs();
+
+        OutputStream out = format.compress( new BufferedOutputStream( new FileOutputStream( destFile ), 1 << 16 ), threads );
+        TarArchiveOutputStream tar = new TarArchiveOutputStream( out );
+        try
+        {
+            tar.setLongFileMode( TarArchiveOutputStream.LONGFILE_POSIX );
+            tar.setBigNumberMode( TarArchiveOutputStream.BIGNUMBER_POSIX );
+
+            add( tar, directory.toPath(), directory.getName(), executables );
+
+            tar.finish();
+        }
+        finally
+        {
+            tar.close();
+        }
+    }
+
+    /**
+     * Extract an archive written by {@link #createArchive(File, Set, File)}, restoring permissions, modification times
+     * and symbolic links. The archive may come from a shared cache, so nothing is written outside of the directory:
+     * entries and link targets must stay inside it, and nothing is written through a symbolic link.
+     *
+     * @param archive The archive to read
+     * @param directory The directory the top level entry of the archive is extracted into
+     * @throws IOException If the archive is broken, has entries or links pointing outside of the directory, or has
+     *             entries below a symbolic link
+     */
+    public void extractArchive( File archive, File directory )
+        throws IOException
+    {
+        Path root = directory.getAbsoluteFile().toPath().normalize();
+        List<TarArchiveEntry> directories = new ArrayList<TarArchiveEntry>();
+
+        TarArchiveInputStream tar =
+            new TarArchiveInputStream( format.decompress( new BufferedInputStream( new FileInputStream( archive ), 1 << 16 ) ) );
+        try
+        {
+            TarArchiveEntry entry;
+            while ( ( entry = tar.getNextEntry() ) != null )
+            {
+                Path path = root.resolve( entry.getName() ).normalize();
+                if ( !path.startsWith( root ) )
+                {
+                    throw new IOException( "Archive entry " + entry.getName() + " points outside of " + directory );
+                }
+
+                checkNoLinks( root, path, entry );
+
+                if ( entry.isDirectory() )
+                {
+                    Files.createDirectories( path );
+                    // Set permissions and times once the files in it are written
+                    directories.add( entry );
+                    continue;
+                }
+
+                Files.createDirectories( path.getParent() );
+                Files.deleteIfExists( path );
+                if ( entry.isSymbolicLink() )
+                {
+                    Path target = path.getFileSystem().getPath( entry.getLinkName() );
+                    if ( !path.getParent().resolve( target ).normalize().startsWith( root ) )
+                    {
+                        throw new IOException( "Archive entry " + entry.getName() + " links to " + entry.getLinkName()
+                            + ", outside of " + directory );
+                    }
+                    Files.createSymbolicLink( path, target );
+                }
+                else
+                {
+                    Files.copy( tar, path, StandardCopyOption.REPLACE_EXISTING );
+                    restoreAttributes( path, entry );
+                }
+            }
+        }
+        finally
+        {
+            tar.close();
+        }
+
+        for ( int i = directories.size() - 1; i >= 0; i-- )
+        {
+            TarArchiveEntry entry = directories.get( i );
+            Path path = root.resolve( entry.getName() ).normalize();
+            // A later entry may have replaced the directory
+            if ( Files.isDirectory( path, LinkOption.NOFOLLOW_LINKS ) )
+            {
+                restoreAttributes( path, entry );
+            }
+        }
+    }
+
+    /**
+     * Refuse to write an entry whose path, or any directory leading to it below the root, is a symbolic link, as
+     * writing through it could end up anywhere.
+     */
+    private static void checkNoLinks( Path root, Path path, TarArchiveEntry entry )
+        throws IOException
+    {
+        Path current = root;
+        for ( Path name : root.relativize( path ) )
+        {
+            current = current.resolve( name );
+            if ( Files.isSymbolicLink( current ) && !( current.equals( path ) && !entry.isDirectory() ) )
+            {
+                throw new IOException( "Archive entry " + entry.getName()
+                    + " would be written through the symbolic link " + current );
+            }
+            if ( !Files.exists( current, LinkOption.NOFOLLOW_LINKS ) )
+            {
+                break;
+            }
+        }
+    }
+
+    private static void restoreAttributes( Path path, TarArchiveEntry entry )
+        throws IOException
+    {
+        PosixFileAttributeView posix =
+            Files.getFileAttributeView( path, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS );
+        if ( posix != null )
+        {
+            Set<PosixFilePermission> permissions = EnumSet.noneOf( PosixFilePermission.class );
+            for ( PosixFilePermission permission : PosixFilePermission.values() )
+            {
+                if ( ( entry.getMode() & ( 0400 >> permission.ordinal() ) ) != 0 )
+                {
+                    permissions.add( permission );
+                }
+            }
+            posix.setPermissions( permissions );
+        }
+        else if ( ( entry.getMode() & 0100 ) != 0 )
+        {
+            path.toFile().setExecutable( true, false );
+        }
+        FileTime modified = FileTime.fromMillis( entry.getModTime().getTime() );
+        Files.getFileAttributeView( path, BasicFileAttributeView.class, LinkOption.NOFOLLOW_LINKS ).setTimes( modified,
+                                                                                                              null, null );
+    }
+
+    private void add( TarArchiveOutputStream tar, Path path, String name, Set<String> executables )
+        throws IOException
+    {
+        TarArchiveEntry entry;
+        boolean regularFile = false;
+        if ( Files.isSymbolicLink( path ) )
+        {
+            entry = new TarArchiveEntry( name, TarConstants.LF_SYMLINK );
+            entry.setLinkName( Files.readSymbolicLink( path ).toString() );
+        }
+        else if ( Files.isDirectory( path ) )
+        {
+            entry = new TarArchiveEntry( name + "/" );
+        }
+        else
+        {
+            entry = new TarArchiveEntry( name );
+            entry.setSize( Files.size( path ) );
+            regularFile = true;
+        }
+
+        entry.setModTime( Files.getLastModifiedTime( path, LinkOption.NOFOLLOW_LINKS ).toMillis() );
+        entry.setMode( modeOf( path, entry, executables.contains( name ) ) );
+
+        tar.putArchiveEntry( entry );
+        if ( regularFile )
+        {
+            Files.copy( path, tar );
+        }
+        tar.closeArchiveEntry();
+
+        if ( entry.isDirectory() && !entry.isSymbolicLink() )
+        {
+            List<Path> children = new ArrayList<Path>();
+            DirectoryStream<Path> stream = Files.newDirectoryStream( path );
+            try
+            {
+                for ( Path child : stream )
+                {
+                    children.add( child );
+                }
+            }
+            finally
+            {
+                stream.close();
+            }
+            Collections.sort( children );
+
+            for ( Path child : children )
+            {
+                add( tar, child, name + "/" + child.getFileName(), executables );
+            }
+        }
+    }
+
+    private static int modeOf( Path path, TarArchiveEntry entry, boolean executable )
+        throws IOException
+    {
+        int type = entry.getMode() & ~07777;
+
+        int permissions;
+        PosixFileAttributeView posix =
+            Files.getFileAttributeView( path, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS );
+        if ( posix != null )
+        {
+            permissions = 0;
+            Set<PosixFilePermission> set = posix.readAttributes().permissions();
+            for ( PosixFilePermission permission : PosixFilePermission.values() )
+            {
+                if ( set.contains( permission ) )
+                {
+                    // OWNER_READ is 0400 and OTHERS_EXECUTE is 0001, in declaration order
+                    permissions |= 0400 >> permission.ordinal();
+                }
+            }
+        }
+        else
+        {
+            permissions = entry.isDirectory() || entry.isSymbolicLink() ? 0755 : 0644;
+        }
+
+        if ( executable )
+        {
+            permissions |= 0755;
+        }
+        return type | permissions;
+    }
+}
@@ -0,0 +1,51 @@
+package org.codehaus.mojo.osxappbundle.archive;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZInputStream;
+
+/**
+ * XZ compression at the default preset. XZ for Java has no multi-threaded encoder, so the data is compressed in
+ * independent blocks by a {@link ParallelXZOutputStream}.
+ */
+public class XzFormat
+    implements ArchiveFormat
+{
+
+    public String getExtension()
+    {
+        return "tar.xz";
+    }
+
+    public OutputStream compress( OutputStream out, int threads )
+        throws IOException
+    {
+        return new ParallelXZOutputStream( out, new LZMA2Options(), threads );
+    }
+
+    public InputStream decompress( InputStream in )
+        throws IOException
+    {
+        // Reads the concatenated streams written by ParallelXZOutputStream
+        return new XZInputStream( in );
+    }
+}
@@ -0,0 +1,54 @@
+package org.codehaus.mojo.osxappbundle.archive;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+/**
+ * Zstandard compression, using zstd's own worker threads.
+ */
+public class ZstdFormat
+    implements ArchiveFormat
+{
+
+    public String getExtension()
+    {
+        return "tar.zst";
+    }
+
+    public OutputStream compress( OutputStream out, int threads )
+        throws IOException
+    {
+        ZstdOutputStream zstd = new ZstdOutputStream( out );
+        if ( threads > 1 )
+        {
+            zstd.setWorkers( threads );
+        }
+        return zstd;
+    }
+
+    public InputStream decompress( InputStream in )
+        throws IOException
+    {
+        return new ZstdInputStream( in );
+    }
+}
@@ -0,0 +1,51 @@
+package org.codehaus.mojo.osxappbundle.cache;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A store for the finished outputs of a bundle build, shared between builds. Entries are grouped under a key computed
+ * from everything that goes into the bundle, see {@link CacheKey}. <code>toString()</code> describes the location of the
+ * cache without any credentials, for the build log.
+ */
+public interface BundleCache
+{
+    /**
+     * Download an entry.
+     *
+     * @param key The hash of the bundle inputs
+     * @param name The name of the entry
+     * @param destination Where to write the entry, only replaced once the whole entry was read
+     * @return <code>false</code> if the cache has no such entry
+     * @throws IOException If the cache can't be read
+     */
+    boolean fetch( String key, String name, File destination )
+        throws IOException;
+
+    /**
+     * Upload an entry, replacing an existing one with the same name.
+     *
+     * @param key The hash of the bundle inputs
+     * @param name The name of the entry
+     * @param source The file to store
+     * @throws IOException If the cache can't be written
+     */
+    void store( String key, String name, File source )
+        throws IOException;
+}
@@ -0,0 +1,156 @@
+package org.codehaus.mojo.osxappbundle.cache;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Builds a SHA-256 hash of named values and file contents. Every value is written with its name and length, so that
+ * moving text from one value to the next changes the key.
+ */
+public class CacheKey
+{
+
+    private static final Charset UTF_8 = Charset.forName( "utf-8" );
+
+    private final MessageDigest digest = newDigest();
+
+    private final byte[] buffer = new byte[1 << 16];
+
+    private String key;
+
+    /**
+     * @param name What the value is
+     * @param value The value, may be <code>null</code>
+     * @return this key
+     */
+    public CacheKey add( String name, String value )
+    {
+        addName( name );
+        if ( value == null )
+        {
+            digest.update( (byte) 0 );
+        }
+        else
+        {
+            digest.update( (byte) 1 );
+            addBytes( value.getBytes( UTF_8 ) );
+        }
+        return this;
+    }
+
+    /**
+     * @param name What the file is
+     * @param file The file whose content is added, may be <code>null</code> or missing
+     * @return this key
+     * @throws IOException If the file can't be read
+     */
+    public CacheKey add( String name, File file )
+        throws IOException
+    {
+        if ( file == null || !file.isFile() )
+        {
+            return add( name, (String) null );
+        }
+
+        InputStream in = new FileInputStream( file );
+        try
+        {
+            return add( name, in );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * @param name What the content is
+     * @param in The content, read to the end but not closed
+     * @return this key
+     * @throws IOException If the stream can't be read
+     */
+    public CacheKey add( String name, InputStream in )
+        throws IOException
+    {
+        MessageDigest content = newDigest();
+        int read;
+        while ( ( read = in.read( buffer ) ) != -1 )
+        {
+            content.update( buffer, 0, read );
+        }
+
+        addName( name );
+        digest.update( (byte) 2 );
+        addBytes( content.digest() );
+        return this;
+    }
+
+    /**
+     * @return The key as 64 hexadecimal digits. Nothing can be added afterwards.
+     */
+    public String toString()
+    {
+        if ( key == null )
+        {
+            StringBuffer hex = new StringBuffer();
+            byte[] hash = digest.digest();
+            for ( int i = 0; i < hash.length; i++ )
+            {
+                hex.append( Character.forDigit( ( hash[i] >> 4 ) & 0xf, 16 ) );
+                hex.append( Character.forDigit( hash[i] & 0xf, 16 ) );
+            }
+            key = hex.toString();
+        }
+        return key;
+    }
+
+    private void addName( String name )
+    {
+        if ( key != null )
+        {
+            throw new IllegalStateException( "The key has already been computed" );
+        }
+        addBytes( name.getBytes( UTF_8 ) );
+    }
+
+    private void addBytes( byte[] bytes )
+    {
+        int length = bytes.length;
+        digest.update( new byte[] { (byte) ( length >>> 24 ), (byte) ( length >>> 16 ), (byte) ( length >>> 8 ),
+            (byte) length } );
+        digest.update( bytes );
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-256" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-256 is not available", e );
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.codehaus.mojo.osxappbundle.cache;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A bundle cache in a directory, typically on a volume shared by the build agents. Each entry is a file named
+ * <code>key/name</code> below the directory.
+ */
+public class FileBundleCache
+    implements BundleCache
+{
+
+    private final File directory;
+
+    public FileBundleCache( File directory )
+    {
+        this.directory = directory;
+    }
+
+    public String toString()
+    {
+        return directory.getPath();
+    }
+
+    public boolean fetch( String key, String name, File destination )
+        throws IOException
+    {
+        File entry = new File( new File( directory, key ), name );
+        if ( !entry.isFile() )
+        {
+            return false;
+        }
+        copy( entry.toPath(), destination.toPath() );
+        return true;
+    }
+
+    public void store( String key, String name, File source )
+        throws IOException
+    {
+        copy( source.toPath(), new File( new File( directory, key ), name ).toPath() );
+    }
+
+    /**
+     * Copy next to the target and move it into place, so that concurrent builds never see a partial file.
+     */
+    static void copy( Path source, Path target )
+        throws IOException
+    {
+        Files.createDirectories( target.getParent() );
+        Path temp = Files.createTempFile( target.getParent(), target.getFileName().toString(), ".part" );
+        try
+        {
+            Files.copy( source, temp, StandardCopyOption.REPLACE_EXISTING );
+            move( temp, target );
+        }
+        finally
+        {
+            Files.deleteIfExists( temp );
+        }
+    }
+
+    static void move( Path source, Path target )
+        throws IOException
+    {
+        try
+        {
+            Files.move( source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch ( AtomicMoveNotSupportedException e )
+        {
+            Files.move( source, target, StandardCopyOption.REPLACE_EXISTING );
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package org.codehaus.mojo.osxappbundle.cache;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+
+/**
+ * A bundle cache on an HTTP server that answers <code>GET</code> and <code>PUT</code> below a base URL, like the
+ * build caches of most CI servers, an nginx with WebDAV enabled or a Maven repository manager's raw repository. Each
+ * entry is stored at <code>base/key/name</code>. Credentials in the URL are sent as basic authentication.
+ */
+public class HttpBundleCache
+    implements BundleCache
+{
+
+    private final String base;
+
+    private final String authorization;
+
+    private final int timeout;
+
+    /**
+     * @param url The base URL of the cache
+     * @param timeout Connect and read timeout in milliseconds
+     */
+    public HttpBundleCache( URL url, int timeout )
+        throws IOException
+    {
+        String userInfo = url.getUserInfo();
+        String external = url.toExternalForm();
+        if ( userInfo != null )
+        {
+            external = external.replace( userInfo + "@", "" );
+            this.authorization = "Basic "
+                + Base64.getEncoder().encodeToString( URLDecoder.decode( userInfo, "utf-8" ).getBytes( "utf-8" ) );
+        }
+        else
+        {
+            this.authorization = null;
+        }
+        this.base = external.endsWith( "/" ) ? external : external + "/";
+        this.timeout = timeout;
+    }
+
+    /**
+     * Remove the user name and password from a URL, for messages.
+     *
+     * @param url A URL, which need not be valid
+     * @return The URL without credentials
+     */
+    public static String redact( String url )
+    {
+        return url.replaceFirst( "^([^:/?#]+://)[^/?#]*@", "$1" );
+    }
+
+    /**
+     * @return The base URL, without credentials
+     */
+    public String toString()
+    {
+        return base;
+    }
+
+    public boolean fetch( String key, String name, File destination )
+        throws IOException
+    {
+        HttpURLConnection connection = open( key, name, "GET" );
+        try
+        {
+            int status = connection.getResponseCode();
+            if ( status == HttpURLConnection.HTTP_NOT_FOUND )
+            {
+                return false;
+            }
+            if ( status != HttpURLConnection.HTTP_OK )
+            {
+                throw new IOException( "GET " + connection.getURL() + " returned HTTP " + status );
+            }
+
+            Path target = destination.toPath();
+            Files.createDirectories( target.getParent() );
+            Path temp = Files.createTempFile( target.getParent(), target.getFileName().toString(), ".part" );
+            try
+            {
+                InputStream in = connection.getInputStream();
+                try
+                {
+                    long length = Files.copy( in, temp, StandardCopyOption.REPLACE_EXISTING );
+                    long expected = connection.getContentLengthLong();
+                    if ( expected >= 0 && length != expected )
+                    {
+                        throw new IOException( "GET " + connection.getURL() + " ended after " + length + " of " + expected
+                            + " bytes" );
+                    }
+                }
+                finally
+                {
+                    in.close();
+                }
+                FileBundleCache.move( temp, target );
+            }
+            finally
+            {
+                Files.deleteIfExists( temp );
+            }
+            return true;
+        }
+        finally
+        {
+            connection.disconnect();
+        }
+    }
+
+    public void store( String key, String name, File source )
+        throws IOException
+    {
+        HttpURLConnection connection = open( key, name, "PUT" );
+        try
+        {
+            connection.setDoOutput( true );
+            connection.setFixedLengthStreamingMode( source.length() );
+            connection.setRequestProperty( "Content-Type", "application/octet-stream" );
+
+            OutputStream out = connection.getOutputStream();
+            try
+            {
+                Files.copy( source.toPath(), out );
+            }
+            finally
+            {
+                out.close();
+            }
+
+            int status = connection.getResponseCode();
+            if ( status / 100 != 2 )
+            {
+                throw new IOException( "PUT " + connection.getURL() + " returned HTTP " + status );
+            }
+        }
+        finally
+        {
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection open( String key, String name, String method )
+        throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL( base + key + "/" + name ).openConnection();
+        connection.setRequestMethod( method );
+        connection.setConnectTimeout( timeout );
+        connection.setReadTimeout( timeout );
+        connection.setUseCaches( false );
+        if ( authorization != null )
+        {
+            connection.setRequestProperty( "Authorization", authorization );
+        }
+        return connection;
+    }
+}
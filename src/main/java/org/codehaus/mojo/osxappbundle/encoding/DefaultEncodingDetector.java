@@ -32,7 +32,7 @@ public class DefaultEncodingDetector
     implements EncodingDetector
 {
 
-    private Pattern pattern = Pattern.compile( "<?(xml|XML).*encoding=\"(.*)\""); //.*encoding=\"(.*)\"" );
+    private static final Pattern PATTERN = Pattern.compile( "<?(xml|XML).*encoding=\"(.*)\""); //.*encoding=\"(.*)\"" );
 
     private static final String DEFAULT_ENCODING = "utf-8";
 
@@ -56,7 +56,7 @@ public class DefaultEncodingDetector
             int read = reader.read( buffer );
 
             String string = new String( buffer, 0, read );
-            Matcher matcher = pattern.matcher( string );
+            Matcher matcher = PATTERN.matcher( string );
             if ( matcher.find() )
             {
                 return matcher.group( 2 );
@@ -0,0 +1,331 @@
+package org.codehaus.mojo.osxappbundle.launcher;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generates a POSIX shell script that starts the application in place of Apple's JavaApplicationStub. The classpath
+ * and JVM options are worked out at build time, so at launch the script only has to find a <code>java</code>
+ * executable: an embedded runtime, <code>$JAVA_HOME</code>, <code>/usr/libexec/java_home</code> or the path, in that
+ * order. Like the stub, the script sets <code>$APP_PACKAGE</code> and <code>$JAVAROOT</code>, which the classpath and
+ * the JVM options may refer to.
+ */
+public class LauncherScript
+{
+
+    /**
+     * The variables the script defines, left for the shell to expand in quoted values.
+     */
+    private static final Pattern VARIABLE =
+        Pattern.compile( "\\$(APP_PACKAGE|CONTENTS|JAVAROOT|CACHE)\\b|\\$\\{(APP_PACKAGE|CONTENTS|JAVAROOT|CACHE)\\}" );
+
+    private final String name;
+
+    private final String mainClass;
+
+    private final List<String> classpath;
+
+    private String vmOptions;
+
+    private String jvmVersion;
+
+    private String runtimeDirectory;
+
+    private String iconFile;
+
+    private String argFile;
+
+    private boolean classDataSharing;
+
+    private boolean tieredStartup;
+
+    /**
+     * @param name The name of the application, shown in the dock and used for the class data sharing archive
+     * @param mainClass The class to run
+     * @param classpath The classpath entries, may refer to <code>$JAVAROOT</code>
+     */
+    public LauncherScript( String name, String mainClass, List<String> classpath )
+    {
+        this.name = name;
+        this.mainClass = mainClass;
+        this.classpath = new ArrayList<String>( classpath );
+    }
+
+    /**
+     * @param vmOptions Options to the JVM separated by spaces, like VMOptions in Info.plist
+     */
+    public void setVmOptions( String vmOptions )
+    {
+        this.vmOptions = vmOptions;
+    }
+
+    /**
+     * @param jvmVersion The version to ask <code>/usr/libexec/java_home</code> for, like <code>1.8+</code>
+     */
+    public void setJvmVersion( String jvmVersion )
+    {
+        this.jvmVersion = jvmVersion;
+    }
+
+    /**
+     * @param runtimeDirectory The home directory of an embedded runtime, relative to the Contents directory
+     */
+    public void setRuntimeDirectory( String runtimeDirectory )
+    {
+        this.runtimeDirectory = runtimeDirectory;
+    }
+
+    /**
+     * @param iconFile The icon in Contents/Resources shown in the dock on OS X
+     */
+    public void setIconFile( String iconFile )
+    {
+        this.iconFile = iconFile;
+    }
+
+    /**
+     * Pass the classpath in an argument file (Java 9 and later) rather than on the command line. The file in the
+     * bundle holds paths relative to <code>$JAVAROOT</code>. The script keeps a copy with absolute paths in the user's
+     * cache directory and passes that one, so the application starts in the caller's working directory.
+     *
+     * @param argFile The name of the argument file in <code>$JAVAROOT</code>, <code>null</code> to put the classpath on
+     *            the command line
+     */
+    public void setArgFile( String argFile )
+    {
+        this.argFile = argFile;
+    }
+
+    /**
+     * @param classDataSharing Keep a class data sharing archive of the application classes in the user's cache
+     *            directory, created on the first launch (Java 19 and later, ignored by older runtimes)
+     */
+    public void setClassDataSharing( boolean classDataSharing )
+    {
+        this.classDataSharing = classDataSharing;
+    }
+
+    /**
+     * @param tieredStartup Only use the client compiler, which starts faster at the cost of peak performance
+     */
+    public void setTieredStartup( boolean tieredStartup )
+    {
+        this.tieredStartup = tieredStartup;
+    }
+
+    /**
+     * @return The shell script
+     */
+    public String generate()
+    {
+        StringBuffer script = new StringBuffer();
+        script.append( "#!/bin/sh\n" );
+        script.append( "# Starts " ).append( name ).append( ", generated by the osxappbundle plugin\n\n" );
+
+        script.append( "APP_PACKAGE=$(cd \"$(dirname \"$0\")/../..\" && pwd -P) || exit 1\n" );
+        script.append( "CONTENTS=\"$APP_PACKAGE/Contents\"\n" );
+        script.append( "JAVAROOT=\"$CONTENTS/Resources/Java\"\n\n" );
+
+        script.append( "if " );
+        if ( runtimeDirectory != null && runtimeDirectory.length() > 0 )
+        {
+            script.append( "[ -x " ).append( quote( "$CONTENTS/" + runtimeDirectory + "/bin/java" ) ).append( " ]; then\n" );
+            script.append( "    JAVA=" ).append( quote( "$CONTENTS/" + runtimeDirectory + "/bin/java" ) ).append( "\n" );
+            script.append( "elif " );
+        }
+        script.append( "[ -n \"$JAVA_HOME\" ] && [ -x \"$JAVA_HOME/bin/java\" ]; then\n" );
+        script.append( "    JAVA=\"$JAVA_HOME/bin/java\"\n" );
+        script.append( "elif [ -x /usr/libexec/java_home ] && JAVA_HOME=$(/usr/libexec/java_home" );
+        if ( jvmVersion != null && jvmVersion.length() > 0 )
+        {
+            script.append( " -v " ).append( quote( jvmVersion ) );
+        }
+        script.append( " 2>/dev/null); then\n" );
+        script.append( "    JAVA=\"$JAVA_HOME/bin/java\"\n" );
+        script.append( "elif command -v java >/dev/null 2>&1; then\n" );
+        script.append( "    JAVA=java\n" );
+        script.append( "else\n" );
+        script.append( "    echo " ).append( quote( name + ": no Java runtime found" ) ).append( " >&2\n" );
+        script.append( "    exit 1\n" );
+        script.append( "fi\n\n" );
+
+        if ( classDataSharing || argFile != null )
+        {
+            script.append( "if [ \"$(uname)\" = Darwin ]; then\n" );
+            script.append( "    CACHE=\"$HOME/Library/Caches\"\n" );
+            script.append( "else\n" );
+            script.append( "    CACHE=\"${XDG_CACHE_HOME:-$HOME/.cache}\"\n" );
+            script.append( "fi\n" );
+            script.append( "CACHE=\"$CACHE/\"" ).append( quote( name ) ).append( "\n" );
+            script.append( "mkdir -p \"$CACHE\" 2>/dev/null\n\n" );
+        }
+
+        if ( argFile != null )
+        {
+            // The bundled argument file is relative to $JAVAROOT, keep a copy with absolute paths for the JVM. It is
+            // made again when the bundle moves, which the first line records, or when the bundled file changes.
+            String bundled = quote( "$JAVAROOT/" + argFile );
+            String cached = quote( "$CACHE/" + argFile );
+            script.append( "if [ ! -f " ).append( cached ).append( " ] || [ " ).append( bundled ).append( " -nt " );
+            script.append( cached ).append( " ] || ! { IFS= read -r LINE < " ).append( cached );
+            script.append( " && [ \"$LINE\" = \"# $APP_PACKAGE\" ]; }; then\n" );
+            script.append( "    ROOT=$(printf '%s\\n' \"$JAVAROOT\" | sed 's/[\\\\\"]/\\\\&/g; s/[\\\\&|]/\\\\&/g')\n" );
+            script.append( "    { printf '# %s\\n' \"$APP_PACKAGE\"; sed \"2s|^\\\"\\\\([^/]\\\\)|\\\"$ROOT/\\\\1|; " );
+            script.append( "2s|:\\\\([^/]\\\\)|:$ROOT/\\\\1|g\" " ).append( bundled ).append( "; } > " );
+            String temporary = quote( "$CACHE/" + argFile + "." ) + "$$";
+            script.append( temporary ).append( " && mv -f " ).append( temporary ).append( ' ' ).append( cached );
+            script.append( " || {\n" );
+            script.append( "        echo " ).append( quote( name + ": can't write $CACHE/" + argFile ) ).append( " >&2\n" );
+            script.append( "        exit 1\n" );
+            script.append( "    }\n" );
+            script.append( "fi\n" );
+        }
+        else
+        {
+            script.append( "APP_CLASSPATH=" ).append( quote( join( classpath, ":" ) ) ).append( "\n" );
+        }
+
+        String options = getOptions();
+        script.append( "if [ \"$(uname)\" = Darwin ]; then\n" );
+        script.append( "    exec \"$JAVA\" " ).append( quote( "-Xdock:name=" + name ) );
+        if ( iconFile != null )
+        {
+            script.append( ' ' ).append( quote( "-Xdock:icon=$CONTENTS/Resources/" + iconFile ) );
+        }
+        script.append( options ).append( " \"$@\"\n" );
+        script.append( "fi\n" );
+        script.append( "exec \"$JAVA\"" ).append( options ).append( " \"$@\"\n" );
+
+        return script.toString();
+    }
+
+    /**
+     * @return The content of the argument file holding the classpath
+     * @throws IllegalStateException If a classpath entry refers to a variable other than a leading <code>$JAVAROOT</code>,
+     *             which an argument file can't expand
+     */
+    public String generateArgFile()
+    {
+        List<String> relative = new ArrayList<String>();
+        for ( String entry : classpath )
+        {
+            String path = entry;
+            if ( path.startsWith( "$JAVAROOT/" ) )
+            {
+                path = path.substring( "$JAVAROOT/".length() );
+            }
+            if ( path.indexOf( '$' ) >= 0 )
+            {
+                throw new IllegalStateException( "The classpath entry " + entry
+                    + " can't be put in an argument file, only a leading $JAVAROOT is supported" );
+            }
+            relative.add( path );
+        }
+        return "-cp\n\"" + join( relative, ":" ).replace( "\\", "\\\\" ).replace( "\"", "\\\"" ) + "\"\n";
+    }
+
+    /**
+     * @return The JVM options and main class, each preceded by a space and quoted for the shell
+     */
+    private String getOptions()
+    {
+        StringBuffer options = new StringBuffer();
+        if ( tieredStartup )
+        {
+            options.append( " -XX:TieredStopAtLevel=1" );
+        }
+        if ( classDataSharing )
+        {
+            options.append( " -XX:+IgnoreUnrecognizedVMOptions -XX:+AutoCreateSharedArchive" );
+            options.append( ' ' ).append( quote( "-XX:SharedArchiveFile=$CACHE/app.jsa" ) );
+        }
+        if ( vmOptions != null )
+        {
+            String[] tokens = vmOptions.trim().split( "\\s+" );
+            for ( int i = 0; i < tokens.length; i++ )
+            {
+                if ( tokens[i].length() > 0 )
+                {
+                    options.append( ' ' ).append( quote( tokens[i] ) );
+                }
+            }
+        }
+        if ( argFile != null )
+        {
+            options.append( ' ' ).append( quote( "@$CACHE/" + argFile ) );
+        }
+        else
+        {
+            options.append( " -cp \"$APP_CLASSPATH\"" );
+        }
+        options.append( ' ' ).append( quote( mainClass ) );
+        return options.toString();
+    }
+
+    /**
+     * Quote a value for the shell. <code>$APP_PACKAGE</code>, <code>$CONTENTS</code> and <code>$JAVAROOT</code> are
+     * expanded by the shell, everything else is taken literally.
+     *
+     * @param value The value
+     * @return The value in double quotes
+     */
+    static String quote( String value )
+    {
+        StringBuffer quoted = new StringBuffer( "\"" );
+        Matcher matcher = VARIABLE.matcher( value );
+        int start = 0;
+        while ( matcher.find() )
+        {
+            escape( value.substring( start, matcher.start() ), quoted );
+            quoted.append( "${" ).append( matcher.group( 1 ) != null ? matcher.group( 1 ) : matcher.group( 2 ) ).append( '}' );
+            start = matcher.end();
+        }
+        escape( value.substring( start ), quoted );
+        return quoted.append( '"' ).toString();
+    }
+
+    private static void escape( String text, StringBuffer quoted )
+    {
+        for ( int i = 0; i < text.length(); i++ )
+        {
+            char c = text.charAt( i );
+            if ( c == '"' || c == '\\' || c == '$' || c == '`' )
+            {
+                quoted.append( '\\' );
+            }
+            quoted.append( c );
+        }
+    }
+
+    private static String join( List<String> values, String separator )
+    {
+        StringBuffer joined = new StringBuffer();
+        for ( String value : values )
+        {
+            if ( joined.length() > 0 )
+            {
+                joined.append( separator );
+            }
+            joined.append( value );
+        }
+        return joined.toString();
+    }
+}
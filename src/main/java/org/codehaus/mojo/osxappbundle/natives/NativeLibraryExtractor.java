@@ -0,0 +1,200 @@
+package org.codehaus.mojo.osxappbundle.natives;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.IOUtils;
+import org.codehaus.plexus.util.SelectorUtils;
+
+/**
+ * Extracts native libraries (.dylib, .jnilib) out of dependency jars so they can be loaded directly from the bundle instead
+ * of being unpacked to a temporary directory on every launch. Libraries are flattened into a single directory, the first
+ * library with a given file name wins. Files that are not jars or zips, like pom dependencies, are skipped.
+ */
+public class NativeLibraryExtractor
+{
+
+    /**
+     * Default includes - all Mac OS X native library types.
+     */
+    public static final String[] DEFAULT_INCLUDES = { "**/*.dylib", "**/*.jnilib" };
+
+    private final String[] includes;
+
+    private final String[] excludes;
+
+    /**
+     * File names of the extracted libraries, mapped to the jar entry they came from.
+     */
+    private final Map<String, String> extracted = new LinkedHashMap<String, String>();
+
+    private final List<String> skipped = new ArrayList<String>();
+
+    public NativeLibraryExtractor( String[] includes, String[] excludes )
+    {
+        this.includes = includes == null || includes.length == 0 ? DEFAULT_INCLUDES : includes;
+        this.excludes = excludes == null ? new String[0] : excludes;
+    }
+
+    /**
+     * Extracts all matching native libraries of a jar file.
+     *
+     * @param jar The jar file to scan
+     * @param destDirectory The directory the libraries are extracted into
+     * @return The file names of the libraries extracted from this jar, empty if the file is not a jar or zip
+     * @throws IOException If the jar can't be read or a library can't be written
+     */
+    public List<String> extract( File jar, File destDirectory )
+        throws IOException
+    {
+        List<String> names = new ArrayList<String>();
+        if ( !isZip( jar ) )
+        {
+            return names;
+        }
+
+        ZipFile zip = new ZipFile( jar );
+        try
+        {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while ( entries.hasMoreElements() )
+            {
+                ZipEntry entry = entries.nextElement();
+                if ( entry.isDirectory() || !isIncluded( entry.getName() ) )
+                {
+                    continue;
+                }
+
+                String name = entry.getName().substring( entry.getName().lastIndexOf( '/' ) + 1 );
+                if ( extracted.containsKey( name ) )
+                {
+                    skipped.add( jar.getName() + "!/" + entry.getName() );
+                    continue;
+                }
+
+                destDirectory.mkdirs();
+
+                InputStream in = zip.getInputStream( entry );
+                OutputStream out = new FileOutputStream( new File( destDirectory, name ) );
+                try
+                {
+                    IOUtils.copy( in, out );
+                }
+                finally
+                {
+                    IOUtils.closeQuietly( out );
+                    IOUtils.closeQuietly( in );
+                }
+
+                extracted.put( name, entry.getName() );
+                names.add( name );
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+
+        return names;
+    }
+
+    /**
+     * @return The jar entries that matched but were not extracted because a library with the same name already was. This
+     *         usually means a jar ships one library per architecture and the includes and excludes don't choose one.
+     */
+    public List<String> getSkippedEntries()
+    {
+        return skipped;
+    }
+
+    /**
+     * Returns the system properties that make the JVM and the known native-loading libraries (JNA, SQLite JDBC, LWJGL)
+     * pick up the extracted libraries rather than unpacking their own copies. Check {@link #getSkippedEntries()} first:
+     * with libraries found more than once, an extracted copy may be for the wrong architecture.
+     *
+     * @param libraryPath The path of the directory holding the libraries, as seen by the launched application
+     * @return An ordered map of system property names to values, empty if nothing was extracted
+     */
+    public Map<String, String> getSystemProperties( String libraryPath )
+    {
+        Map<String, String> properties = new LinkedHashMap<String, String>();
+        if ( extracted.isEmpty() )
+        {
+            return properties;
+        }
+
+        properties.put( "java.library.path", libraryPath );
+
+        for ( String name : extracted.keySet() )
+        {
+            if ( name.startsWith( "libjnidispatch." ) )
+            {
+                properties.put( "jna.boot.library.path", libraryPath );
+                properties.put( "jna.nounpack", "true" );
+            }
+            else if ( name.startsWith( "libsqlitejdbc." ) )
+            {
+                properties.put( "org.sqlite.lib.path", libraryPath );
+                properties.put( "org.sqlite.lib.name", name );
+            }
+            else if ( name.startsWith( "liblwjgl" ) )
+            {
+                properties.put( "org.lwjgl.librarypath", libraryPath );
+            }
+        }
+
+        return properties;
+    }
+
+    private static boolean isZip( File file )
+    {
+        String name = file.getName().toLowerCase( Locale.ENGLISH );
+        return name.endsWith( ".jar" ) || name.endsWith( ".zip" );
+    }
+
+    private boolean isIncluded( String name )
+    {
+        for ( int i = 0; i < excludes.length; i++ )
+        {
+            if ( SelectorUtils.matchPath( excludes[i], name ) )
+            {
+                return false;
+            }
+        }
+        for ( int i = 0; i < includes.length; i++ )
+        {
+            if ( SelectorUtils.matchPath( includes[i], name ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,78 @@
+package org.codehaus.mojo.osxappbundle.plist;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class PlistArray
+    implements PlistValue
+{
+
+    private final List<PlistValue> values = new ArrayList<PlistValue>();
+
+    /**
+     * @param value The value to append
+     * @return this array
+     */
+    public PlistArray add( PlistValue value )
+    {
+        if ( value == null )
+        {
+            throw new IllegalArgumentException( "A plist array can't hold null" );
+        }
+        values.add( value );
+        return this;
+    }
+
+    /**
+     * @param value The string to append
+     * @return this array
+     */
+    public PlistArray add( String value )
+    {
+        return add( new PlistString( value ) );
+    }
+
+    public List<PlistValue> getValues()
+    {
+        return Collections.unmodifiableList( values );
+    }
+
+    public int size()
+    {
+        return values.size();
+    }
+
+    public void write( PlistWriter writer )
+        throws IOException
+    {
+        writer.startArray();
+        for ( PlistValue value : values )
+        {
+            value.write( writer );
+        }
+        writer.endArray();
+    }
+
+    public String toString()
+    {
+        return values.toString();
+    }
+}
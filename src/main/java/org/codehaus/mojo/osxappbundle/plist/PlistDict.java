@@ -0,0 +1,127 @@
+package org.codehaus.mojo.osxappbundle.plist;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A dictionary. Keys are written in the order they were first put.
+ */
+public class PlistDict
+    implements PlistValue
+{
+
+    private final Map<String, PlistValue> entries = new LinkedHashMap<String, PlistValue>();
+
+    /**
+     * @param key The key
+     * @param value The value, <code>null</code> removes the key
+     * @return this dictionary
+     */
+    public PlistDict put( String key, PlistValue value )
+    {
+        if ( value == null )
+        {
+            entries.remove( key );
+        }
+        else
+        {
+            entries.put( key, value );
+        }
+        return this;
+    }
+
+    /**
+     * @param key The key
+     * @param value The string value, <code>null</code> removes the key
+     * @return this dictionary
+     */
+    public PlistDict put( String key, String value )
+    {
+        return put( key, value == null ? null : new PlistString( value ) );
+    }
+
+    /**
+     * @param key The key
+     * @param value The boolean value
+     * @return this dictionary
+     */
+    public PlistDict put( String key, boolean value )
+    {
+        return put( key, PlistBoolean.valueOf( value ) );
+    }
+
+    /**
+     * @param key The key
+     * @return The value, or <code>null</code> if there is none
+     */
+    public PlistValue get( String key )
+    {
+        return entries.get( key );
+    }
+
+    /**
+     * @param key The key of a nested dictionary
+     * @return The dictionary under the key, a new empty one if the key was not set
+     * @throws IllegalArgumentException If the key holds something else than a dictionary
+     */
+    public PlistDict getDict( String key )
+    {
+        PlistValue value = entries.get( key );
+        if ( value == null )
+        {
+            PlistDict dict = new PlistDict();
+            entries.put( key, dict );
+            return dict;
+        }
+        if ( !( value instanceof PlistDict ) )
+        {
+            throw new IllegalArgumentException( key + " is not a dictionary" );
+        }
+        return (PlistDict) value;
+    }
+
+    public Map<String, PlistValue> getEntries()
+    {
+        return Collections.unmodifiableMap( entries );
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    public void write( PlistWriter writer )
+        throws IOException
+    {
+        writer.startDict();
+        for ( Map.Entry<String, PlistValue> entry : entries.entrySet() )
+        {
+            writer.key( entry.getKey() );
+            entry.getValue().write( writer );
+        }
+        writer.endDict();
+    }
+
+    public String toString()
+    {
+        return entries.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package org.codehaus.mojo.osxappbundle.plist;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+public class PlistString
+    implements PlistValue
+{
+
+    private final String value;
+
+    public PlistString( String value )
+    {
+        if ( value == null )
+        {
+            throw new IllegalArgumentException( "A plist string can't be null" );
+        }
+        this.value = value;
+    }
+
+    public String getValue()
+    {
+        return value;
+    }
+
+    public void write( PlistWriter writer )
+        throws IOException
+    {
+        writer.string( value );
+    }
+
+    public String toString()
+    {
+        return value;
+    }
+}
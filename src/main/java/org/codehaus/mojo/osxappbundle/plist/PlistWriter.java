@@ -0,0 +1,232 @@
+package org.codehaus.mojo.osxappbundle.plist;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Writes a property list in the XML format, one element at a time, indented like the files written by Apple's tools.
+ * Text is escaped, and characters XML can't hold are rejected rather than written into a file that won't parse. The
+ * underlying writer must encode UTF-8, the encoding declared in the document.
+ */
+public class PlistWriter
+{
+
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<!DOCTYPE plist PUBLIC \"-//Apple//DTD PLIST 1.0//EN\" \"http://www.apple.com/DTDs/PropertyList-1.0.dtd\">\n"
+        + "<plist version=\"1.0\">\n";
+
+    private final Writer out;
+
+    private int depth;
+
+    public PlistWriter( Writer out )
+    {
+        this.out = out;
+    }
+
+    /**
+     * Write a whole document.
+     *
+     * @param root The top level value, usually a {@link PlistDict}
+     * @param out The writer, which is flushed but not closed
+     * @throws IOException If the writer fails
+     */
+    public static void write( PlistValue root, Writer out )
+        throws IOException
+    {
+        PlistWriter writer = new PlistWriter( out );
+        writer.startDocument();
+        root.write( writer );
+        writer.endDocument();
+    }
+
+    public void startDocument()
+        throws IOException
+    {
+        out.write( HEADER );
+    }
+
+    public void endDocument()
+        throws IOException
+    {
+        out.write( "</plist>\n" );
+        out.flush();
+    }
+
+    public void startDict()
+        throws IOException
+    {
+        line( "<dict>" );
+        depth++;
+    }
+
+    public void endDict()
+        throws IOException
+    {
+        depth--;
+        line( "</dict>" );
+    }
+
+    public void startArray()
+        throws IOException
+    {
+        line( "<array>" );
+        depth++;
+    }
+
+    public void endArray()
+        throws IOException
+    {
+        depth--;
+        line( "</array>" );
+    }
+
+    public void key( String key )
+        throws IOException
+    {
+        element( "key", key );
+    }
+
+    public void string( String value )
+        throws IOException
+    {
+        element( "string", value );
+    }
+
+    public void bool( boolean value )
+        throws IOException
+    {
+        line( value ? "<true/>" : "<false/>" );
+    }
+
+    public void integer( long value )
+        throws IOException
+    {
+        element( "integer", String.valueOf( value ) );
+    }
+
+    public void real( double value )
+        throws IOException
+    {
+        element( "real", String.valueOf( value ) );
+    }
+
+    public void date( Date value )
+        throws IOException
+    {
+        element( "date", formatDate( value ) );
+    }
+
+    /**
+     * Escape text for use in XML character data or attribute values.
+     *
+     * @param text The text to escape
+     * @return The escaped text
+     * @throws IllegalArgumentException If the text contains characters that can't be written to XML 1.0
+     */
+    public static String escape( String text )
+    {
+        StringBuffer escaped = null;
+        for ( int i = 0; i < text.length(); i++ )
+        {
+            char c = text.charAt( i );
+            String replacement;
+            switch ( c )
+            {
+                case '&':
+                    replacement = "&amp;";
+                    break;
+                case '<':
+                    replacement = "&lt;";
+                    break;
+                case '>':
+                    replacement = "&gt;";
+                    break;
+                case '"':
+                    replacement = "&quot;";
+                    break;
+                default:
+                    if ( ( c < 0x20 && c != '\t' && c != '\n' && c != '\r' ) || c == 0xFFFE || c == 0xFFFF )
+                    {
+                        throw new IllegalArgumentException( "Character 0x" + Integer.toHexString( c ) + " in \"" + text
+                            + "\" can't be written to a plist" );
+                    }
+                    replacement = null;
+            }
+
+            if ( replacement != null && escaped == null )
+            {
+                escaped = new StringBuffer( text.length() + 16 ).append( text, 0, i );
+            }
+            if ( escaped != null )
+            {
+                if ( replacement != null )
+                {
+                    escaped.append( replacement );
+                }
+                else
+                {
+                    escaped.append( c );
+                }
+            }
+        }
+        return escaped == null ? text : escaped.toString();
+    }
+
+    static String formatDate( Date date )
+    {
+        SimpleDateFormat format = new SimpleDateFormat( "yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ENGLISH );
+        format.setTimeZone( TimeZone.getTimeZone( "UTC" ) );
+        return format.format( date );
+    }
+
+    private void element( String name, String text )
+        throws IOException
+    {
+        indent();
+        out.write( '<' );
+        out.write( name );
+        out.write( '>' );
+        out.write( escape( text ) );
+        out.write( "</" );
+        out.write( name );
+        out.write( ">\n" );
+    }
+
+    private void line( String markup )
+        throws IOException
+    {
+        indent();
+        out.write( markup );
+        out.write( '\n' );
+    }
+
+    private void indent()
+        throws IOException
+    {
+        for ( int i = 0; i < depth; i++ )
+        {
+            out.write( '\t' );
+        }
+    }
+}
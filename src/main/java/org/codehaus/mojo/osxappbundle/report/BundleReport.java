@@ -0,0 +1,390 @@
+package org.codehaus.mojo.osxappbundle.report;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.codehaus.mojo.osxappbundle.scan.PathPatterns;
+
+/**
+ * Describes what a bundle is made of: the size of every jar and why it is there, classes and resources that are in more
+ * than one jar, the largest resources, and how the jar sizes changed compared to a baseline from an earlier build.
+ */
+public class BundleReport
+{
+
+    /**
+     * Entries that are expected in many jars and are not worth reporting as duplicates.
+     */
+    private static final PathPatterns IGNORED_DUPLICATES = new PathPatterns( Arrays.asList( new String[] {
+        "META-INF/MANIFEST.MF", "META-INF/INDEX.LIST", "META-INF/*.SF", "META-INF/*.RSA", "META-INF/*.DSA",
+        "META-INF/*.EC", "META-INF/LICENSE*", "META-INF/NOTICE*", "META-INF/DEPENDENCIES*", "META-INF/maven/**",
+        "META-INF/services/**", "**/module-info.class", "**/package.html", "LICENSE*", "NOTICE*" } ) );
+
+    private static final String TOTAL_KEY = "total";
+
+    private static final int EXAMPLES = 5;
+
+    private final List<JarIndex> jars;
+
+    /**
+     * Entries found in more than one jar, keyed by the names of the jars they are in.
+     */
+    private final Map<String, List<String>> duplicateClasses = new TreeMap<String, List<String>>();
+
+    private final Map<String, List<String>> duplicateResources = new TreeMap<String, List<String>>();
+
+    private int duplicateClassCount;
+
+    private int duplicateResourceCount;
+
+    private BundleReport( List<JarIndex> jars )
+    {
+        this.jars = jars;
+        findDuplicates();
+    }
+
+    /**
+     * Index jars on several threads.
+     *
+     * @param jars The jar files, mapped to their names in the report
+     * @param trails The dependency trail of each jar, by name, may be missing for some jars
+     * @param threads The number of threads reading jars
+     * @return The report of the jars
+     * @throws IOException If a jar can't be read
+     */
+    public static BundleReport create( Map<String, File> jars, final Map<String, String> trails, int threads )
+        throws IOException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( Math.max( 1, threads ) );
+        try
+        {
+            List<Future<JarIndex>> futures = new ArrayList<Future<JarIndex>>();
+            for ( final Map.Entry<String, File> jar : jars.entrySet() )
+            {
+                futures.add( executor.submit( new Callable<JarIndex>()
+                {
+                    public JarIndex call()
+                        throws IOException
+                    {
+                        return new JarIndex( jar.getValue(), jar.getKey(), trails.get( jar.getKey() ) );
+                    }
+                } ) );
+            }
+
+            // Collected in submission order, so the classpath order decides which copy of a duplicate comes first
+            List<JarIndex> indexes = new ArrayList<JarIndex>();
+            for ( Future<JarIndex> future : futures )
+            {
+                indexes.add( future.get() );
+            }
+            return new BundleReport( indexes );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while indexing jars", e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof IOException )
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException( "Error indexing jars", e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    public int getDuplicateClassCount()
+    {
+        return duplicateClassCount;
+    }
+
+    public int getDuplicateResourceCount()
+    {
+        return duplicateResourceCount;
+    }
+
+    /**
+     * @return The jar sizes and their total, to compare the next build against
+     */
+    public Properties toBaseline()
+    {
+        Properties baseline = new Properties();
+        long total = 0;
+        for ( JarIndex jar : jars )
+        {
+            baseline.setProperty( jar.getName(), String.valueOf( jar.getSize() ) );
+            total += jar.getSize();
+        }
+        baseline.setProperty( TOTAL_KEY, String.valueOf( total ) );
+        return baseline;
+    }
+
+    /**
+     * Write the report as plain text.
+     *
+     * @param out Where to write the report
+     * @param title The first line of the report
+     * @param baseline The result of {@link #toBaseline()} of an earlier build, may be <code>null</code>
+     * @param largestResources The number of resources to list in the largest resources section
+     */
+    public void write( PrintWriter out, String title, Properties baseline, int largestResources )
+    {
+        Properties current = toBaseline();
+        long total = Long.parseLong( current.getProperty( TOTAL_KEY ) );
+
+        out.println( title );
+        out.println();
+        out.print( jars.size() + " jars, " + formatSize( total ) );
+        if ( baseline != null && baseline.getProperty( TOTAL_KEY ) != null )
+        {
+            out.print( " (" + formatChange( total - Long.parseLong( baseline.getProperty( TOTAL_KEY ) ) )
+                + " since the baseline)" );
+        }
+        out.println();
+
+        out.println();
+        out.println( "Jars by size" );
+        List<JarIndex> bySize = new ArrayList<JarIndex>( jars );
+        Collections.sort( bySize, new Comparator<JarIndex>()
+        {
+            public int compare( JarIndex a, JarIndex b )
+            {
+                return a.getSize() == b.getSize() ? a.getName().compareTo( b.getName() )
+                                : ( a.getSize() > b.getSize() ? -1 : 1 );
+            }
+        } );
+        for ( JarIndex jar : bySize )
+        {
+            out.print( "  " + pad( formatSize( jar.getSize() ), 10 ) + "  " + jar.getName() );
+            if ( baseline != null )
+            {
+                String before = baseline.getProperty( jar.getName() );
+                if ( before == null )
+                {
+                    out.print( "  (new)" );
+                }
+                else if ( Long.parseLong( before ) != jar.getSize() )
+                {
+                    out.print( "  (" + formatChange( jar.getSize() - Long.parseLong( before ) ) + ")" );
+                }
+            }
+            out.println();
+            if ( jar.getTrail() != null )
+            {
+                out.println( "              via " + jar.getTrail() );
+            }
+        }
+
+        if ( baseline != null )
+        {
+            List<String> removed = new ArrayList<String>();
+            for ( Iterator<Object> i = baseline.keySet().iterator(); i.hasNext(); )
+            {
+                String name = (String) i.next();
+                if ( !TOTAL_KEY.equals( name ) && current.getProperty( name ) == null )
+                {
+                    removed.add( name );
+                }
+            }
+            if ( !removed.isEmpty() )
+            {
+                Collections.sort( removed );
+                out.println();
+                out.println( "Removed since the baseline" );
+                for ( String name : removed )
+                {
+                    out.println( "  " + pad( formatSize( Long.parseLong( baseline.getProperty( name ) ) ), 10 ) + "  "
+                        + name );
+                }
+            }
+        }
+
+        writeDuplicates( out, "Duplicate classes", duplicateClassCount, duplicateClasses );
+        writeDuplicates( out, "Duplicate resources", duplicateResourceCount, duplicateResources );
+
+        out.println();
+        out.println( "Largest resources" );
+        for ( String line : largestResources( largestResources ) )
+        {
+            out.println( "  " + line );
+        }
+    }
+
+    private void findDuplicates()
+    {
+        Map<String, List<String>> locations = new HashMap<String, List<String>>();
+        for ( JarIndex jar : jars )
+        {
+            for ( int i = 0; i < jar.getEntryCount(); i++ )
+            {
+                String entry = jar.getEntryName( i );
+                List<String> in = locations.get( entry );
+                if ( in == null )
+                {
+                    in = new ArrayList<String>( 1 );
+                    locations.put( entry, in );
+                }
+                in.add( jar.getName() );
+            }
+        }
+
+        for ( Map.Entry<String, List<String>> location : locations.entrySet() )
+        {
+            String entry = location.getKey();
+            if ( location.getValue().size() < 2 || IGNORED_DUPLICATES.matches( entry ) )
+            {
+                continue;
+            }
+
+            String key = join( location.getValue() );
+            Map<String, List<String>> duplicates;
+            if ( entry.endsWith( ".class" ) )
+            {
+                duplicates = duplicateClasses;
+                duplicateClassCount++;
+            }
+            else
+            {
+                duplicates = duplicateResources;
+                duplicateResourceCount++;
+            }
+
+            List<String> entries = duplicates.get( key );
+            if ( entries == null )
+            {
+                entries = new ArrayList<String>();
+                duplicates.put( key, entries );
+            }
+            entries.add( entry );
+        }
+    }
+
+    private static void writeDuplicates( PrintWriter out, String title, int count, Map<String, List<String>> duplicates )
+    {
+        out.println();
+        out.println( title + " (" + count + ")" );
+        for ( Map.Entry<String, List<String>> duplicate : duplicates.entrySet() )
+        {
+            List<String> entries = duplicate.getValue();
+            Collections.sort( entries );
+            out.println( "  " + entries.size() + " in " + duplicate.getKey() );
+            for ( int i = 0; i < Math.min( EXAMPLES, entries.size() ); i++ )
+            {
+                out.println( "      " + entries.get( i ) );
+            }
+            if ( entries.size() > EXAMPLES )
+            {
+                out.println( "      ..." );
+            }
+        }
+    }
+
+    private List<String> largestResources( int count )
+    {
+        // Keyed by the inverted size and then the name, so the largest come first and equal sizes are all kept
+        TreeMap<String, Long> largest = new TreeMap<String, Long>();
+        for ( JarIndex jar : jars )
+        {
+            for ( int i = 0; i < jar.getEntryCount(); i++ )
+            {
+                long size = jar.getEntrySize( i );
+                if ( size > 0 )
+                {
+                    largest.put( String.format( "%019d %s!/%s", Long.valueOf( Long.MAX_VALUE - size ), jar.getName(),
+                                                jar.getEntryName( i ) ), Long.valueOf( size ) );
+                    if ( largest.size() > count )
+                    {
+                        largest.pollLastEntry();
+                    }
+                }
+            }
+        }
+
+        List<String> lines = new ArrayList<String>();
+        for ( Map.Entry<String, Long> entry : largest.entrySet() )
+        {
+            lines.add( pad( formatSize( entry.getValue().longValue() ), 10 ) + "  " + entry.getKey().substring( 20 ) );
+        }
+        return lines;
+    }
+
+    private static String join( List<String> names )
+    {
+        StringBuffer buffer = new StringBuffer();
+        for ( String name : names )
+        {
+            if ( buffer.length() > 0 )
+            {
+                buffer.append( ", " );
+            }
+            buffer.append( name );
+        }
+        return buffer.toString();
+    }
+
+    private static String pad( String s, int width )
+    {
+        StringBuffer buffer = new StringBuffer();
+        for ( int i = s.length(); i < width; i++ )
+        {
+            buffer.append( ' ' );
+        }
+        return buffer.append( s ).toString();
+    }
+
+    private static String formatChange( long bytes )
+    {
+        return ( bytes < 0 ? "-" : "+" ) + formatSize( Math.abs( bytes ) );
+    }
+
+    static String formatSize( long bytes )
+    {
+        if ( bytes < 1024 )
+        {
+            return bytes + " B";
+        }
+        if ( bytes < 1024 * 1024 )
+        {
+            return String.format( Locale.ENGLISH, "%.1f KB", Double.valueOf( bytes / 1024.0 ) );
+        }
+        return String.format( Locale.ENGLISH, "%.1f MB", Double.valueOf( bytes / ( 1024.0 * 1024.0 ) ) );
+    }
+}
@@ -0,0 +1,118 @@
+package org.codehaus.mojo.osxappbundle.report;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The entries of one jar in the bundle, read from its central directory only. Files that are not jars or zips, like pom
+ * dependencies, are listed by their size only.
+ */
+public class JarIndex
+{
+
+    private final String name;
+
+    private final String trail;
+
+    private final long size;
+
+    private final List<String> entryNames = new ArrayList<String>();
+
+    private final List<Long> entrySizes = new ArrayList<Long>();
+
+    /**
+     * Read the central directory of a jar. Files that are not jars or zips are not read and have no entries.
+     *
+     * @param jar The jar file
+     * @param name The name of the jar in the report, relative to $JAVAROOT
+     * @param trail Why the jar is in the bundle, may be <code>null</code>
+     * @throws IOException If the jar can't be read
+     */
+    public JarIndex( File jar, String name, String trail )
+        throws IOException
+    {
+        this.name = name;
+        this.trail = trail;
+        this.size = jar.length();
+
+        String fileName = jar.getName().toLowerCase( Locale.ENGLISH );
+        if ( !fileName.endsWith( ".jar" ) && !fileName.endsWith( ".zip" ) )
+        {
+            return;
+        }
+
+        ZipFile zip = new ZipFile( jar );
+        try
+        {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while ( entries.hasMoreElements() )
+            {
+                ZipEntry entry = entries.nextElement();
+                if ( !entry.isDirectory() )
+                {
+                    entryNames.add( entry.getName() );
+                    entrySizes.add( Long.valueOf( entry.getSize() ) );
+                }
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public String getTrail()
+    {
+        return trail;
+    }
+
+    public long getSize()
+    {
+        return size;
+    }
+
+    public int getEntryCount()
+    {
+        return entryNames.size();
+    }
+
+    public String getEntryName( int i )
+    {
+        return entryNames.get( i );
+    }
+
+    /**
+     * @return The uncompressed size of an entry, -1 if unknown
+     */
+    public long getEntrySize( int i )
+    {
+        return entrySizes.get( i ).longValue();
+    }
+}
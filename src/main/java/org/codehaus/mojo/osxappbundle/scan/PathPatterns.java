@@ -0,0 +1,219 @@
+package org.codehaus.mojo.osxappbundle.scan;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A set of Ant style path patterns (<code>**&#47;*.txt</code>, <code>docs/**</code>) compiled once into regular expressions,
+ * so that matching a path doesn't tokenize every pattern again the way {@link org.codehaus.plexus.util.SelectorUtils} does.
+ * Paths and patterns use '/' as separator and are matched case sensitively.
+ */
+public class PathPatterns
+{
+
+    private final Pattern[] patterns;
+
+    /**
+     * The leading segments of each pattern up to the first wildcard, used to rule out whole directories.
+     */
+    private final String[][] literalPrefixes;
+
+    public PathPatterns( Collection<String> patterns )
+    {
+        this.patterns = new Pattern[patterns.size()];
+        this.literalPrefixes = new String[patterns.size()][];
+
+        int i = 0;
+        for ( String pattern : patterns )
+        {
+            String normalized = normalize( pattern );
+            this.patterns[i] = compile( normalized );
+            this.literalPrefixes[i] = literalPrefix( normalized );
+            i++;
+        }
+    }
+
+    public boolean isEmpty()
+    {
+        return patterns.length == 0;
+    }
+
+    /**
+     * @param path A relative path using '/' as separator
+     * @return <code>true</code> if any of the patterns matches the path
+     */
+    public boolean matches( String path )
+    {
+        for ( int i = 0; i < patterns.length; i++ )
+        {
+            if ( patterns[i].matcher( path ).matches() )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether files below a directory could match any of the patterns. May answer <code>true</code> when no file
+     * actually matches, but never <code>false</code> when one does.
+     *
+     * @param directory A relative directory path using '/' as separator, empty for the root
+     * @return <code>false</code> if the directory can be skipped
+     */
+    public boolean couldMatchBelow( String directory )
+    {
+        String[] segments = directory.length() == 0 ? new String[0] : directory.split( "/" );
+
+        for ( int i = 0; i < literalPrefixes.length; i++ )
+        {
+            String[] prefix = literalPrefixes[i];
+            if ( prefix == null )
+            {
+                return true;
+            }
+
+            boolean match = true;
+            for ( int j = 0; j < Math.min( prefix.length, segments.length ); j++ )
+            {
+                if ( !prefix[j].equals( segments[j] ) )
+                {
+                    match = false;
+                    break;
+                }
+            }
+            if ( match )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String normalize( String pattern )
+    {
+        pattern = pattern.trim().replace( '\\', '/' );
+        if ( pattern.endsWith( "/" ) )
+        {
+            pattern += "**";
+        }
+        return pattern;
+    }
+
+    private static Pattern compile( String pattern )
+    {
+        if ( pattern.startsWith( "%regex[" ) && pattern.endsWith( "]" ) )
+        {
+            return Pattern.compile( pattern.substring( "%regex[".length(), pattern.length() - 1 ) );
+        }
+        if ( pattern.startsWith( "%ant[" ) && pattern.endsWith( "]" ) )
+        {
+            pattern = pattern.substring( "%ant[".length(), pattern.length() - 1 );
+        }
+
+        String[] segments = pattern.split( "/" );
+        StringBuffer regex = new StringBuffer();
+        boolean needSeparator = false;
+
+        for ( int i = 0; i < segments.length; i++ )
+        {
+            String segment = segments[i];
+            if ( segment.length() == 0 )
+            {
+                continue;
+            }
+
+            if ( "**".equals( segment ) )
+            {
+                // Any number of directories, including none
+                if ( i == segments.length - 1 )
+                {
+                    regex.append( needSeparator ? "(?:/.*)?" : ".*" );
+                }
+                else
+                {
+                    regex.append( needSeparator ? "(?:/.*)?/" : "(?:.*/)?" );
+                    needSeparator = false;
+                }
+                continue;
+            }
+
+            if ( needSeparator )
+            {
+                regex.append( '/' );
+            }
+            for ( int j = 0; j < segment.length(); j++ )
+            {
+                char c = segment.charAt( j );
+                if ( c == '*' )
+                {
+                    regex.append( "[^/]*" );
+                }
+                else if ( c == '?' )
+                {
+                    regex.append( "[^/]" );
+                }
+                else if ( Character.isLetterOrDigit( c ) )
+                {
+                    regex.append( c );
+                }
+                else
+                {
+                    regex.append( '\\' ).append( c );
+                }
+            }
+            needSeparator = true;
+        }
+
+        return Pattern.compile( regex.toString() );
+    }
+
+    /**
+     * @return the segments before the first wildcard, or <code>null</code> if the pattern can't be reasoned about
+     */
+    private static String[] literalPrefix( String pattern )
+    {
+        if ( pattern.startsWith( "%regex[" ) )
+        {
+            return null;
+        }
+        if ( pattern.startsWith( "%ant[" ) && pattern.endsWith( "]" ) )
+        {
+            pattern = pattern.substring( "%ant[".length(), pattern.length() - 1 );
+        }
+
+        List<String> prefix = new ArrayList<String>();
+        String[] segments = pattern.split( "/" );
+        // The last segment names files, not directories
+        for ( int i = 0; i < segments.length - 1; i++ )
+        {
+            if ( segments[i].indexOf( '*' ) >= 0 || segments[i].indexOf( '?' ) >= 0 )
+            {
+                break;
+            }
+            if ( segments[i].length() > 0 )
+            {
+                prefix.add( segments[i] );
+            }
+        }
+        return prefix.toArray( new String[prefix.size()] );
+    }
+}
@@ -0,0 +1,216 @@
+package org.codehaus.mojo.osxappbundle.scan;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Walks a directory tree and hands every file matching the include and exclude patterns to a {@link Visitor} as soon as
+ * it is found. Unlike the plexus DirectoryScanner no list of the matching files is built, so memory use doesn't depend
+ * on the size of the tree, and directories that can't contain matches are not descended into.
+ */
+public class ResourceWalker
+{
+
+    /**
+     * Receives the files matched by a {@link ResourceWalker}.
+     */
+    public interface Visitor
+    {
+        /**
+         * @param source The matching file
+         * @param path The path of the file relative to the walked directory, using '/' as separator
+         * @throws IOException To abort the walk
+         */
+        void visit( Path source, String path )
+            throws IOException;
+    }
+
+    private final PathPatterns includes;
+
+    private final PathPatterns excludes;
+
+    /**
+     * Excludes ending in <code>/**</code>, which exclude a directory with everything in it.
+     */
+    private final PathPatterns directoryExcludes;
+
+    public ResourceWalker( Collection<String> includes, Collection<String> excludes )
+    {
+        List<String> directoryExcludes = new ArrayList<String>();
+        for ( String exclude : excludes )
+        {
+            if ( exclude.replace( '\\', '/' ).endsWith( "/**" ) )
+            {
+                directoryExcludes.add( exclude );
+            }
+        }
+
+        this.includes = new PathPatterns( includes );
+        this.excludes = new PathPatterns( excludes );
+        this.directoryExcludes = new PathPatterns( directoryExcludes );
+    }
+
+    /**
+     * @param path A relative path using '/' as separator
+     * @return <code>true</code> if the path is included and not excluded
+     */
+    public boolean isIncluded( String path )
+    {
+        return includes.matches( path ) && !excludes.matches( path );
+    }
+
+    /**
+     * Walk a directory, following symbolic links like the DirectoryScanner does.
+     *
+     * @param directory The directory to walk
+     * @param visitor Receives each matching file
+     * @return The number of files visited
+     * @throws IOException If the tree can't be read or the visitor fails
+     */
+    public long walk( File directory, final Visitor visitor )
+        throws IOException
+    {
+        final Path root = directory.toPath();
+        final long[] count = new long[1];
+
+        Files.walkFileTree( root, EnumSet.of( FileVisitOption.FOLLOW_LINKS ), Integer.MAX_VALUE,
+                            new SimpleFileVisitor<Path>()
+                            {
+                                public FileVisitResult preVisitDirectory( Path dir, BasicFileAttributes attrs )
+                                {
+                                    String path = relativize( root, dir );
+                                    if ( path.length() > 0
+                                        && ( directoryExcludes.matches( path ) || !includes.couldMatchBelow( path ) ) )
+                                    {
+                                        return FileVisitResult.SKIP_SUBTREE;
+                                    }
+                                    return FileVisitResult.CONTINUE;
+                                }
+
+                                public FileVisitResult visitFile( Path file, BasicFileAttributes attrs )
+                                    throws IOException
+                                {
+                                    String path = relativize( root, file );
+                                    if ( isIncluded( path ) )
+                                    {
+                                        visitor.visit( file, path );
+                                        count[0]++;
+                                    }
+                                    return FileVisitResult.CONTINUE;
+                                }
+
+                                public FileVisitResult visitFileFailed( Path file, IOException e )
+                                    throws IOException
+                                {
+                                    if ( e instanceof FileSystemLoopException )
+                                    {
+                                        return FileVisitResult.CONTINUE;
+                                    }
+                                    throw e;
+                                }
+                            } );
+
+        return count[0];
+    }
+
+    /**
+     * Walk a directory like {@link #walk(File, Visitor)}, visiting the files in a deterministic order: the entries of
+     * each directory sorted by name, the files below a directory right where it sorts. Only the entries of the
+     * directories leading to the current file are kept in memory.
+     *
+     * @param directory The directory to walk
+     * @param visitor Receives each matching file
+     * @return The number of files visited
+     * @throws IOException If the tree can't be read or the visitor fails
+     */
+    public long walkSorted( File directory, Visitor visitor )
+        throws IOException
+    {
+        Path root = directory.toPath();
+        return walkSorted( root, root, new ArrayList<Object>(), visitor );
+    }
+
+    /**
+     * @param ancestors The file keys of the directories being walked, to skip symbolic links looping back to them
+     */
+    private long walkSorted( Path root, Path directory, List<Object> ancestors, Visitor visitor )
+        throws IOException
+    {
+        Object key = Files.readAttributes( directory, BasicFileAttributes.class ).fileKey();
+        if ( key != null && ancestors.contains( key ) )
+        {
+            return 0;
+        }
+
+        List<Path> children = new ArrayList<Path>();
+        DirectoryStream<Path> stream = Files.newDirectoryStream( directory );
+        try
+        {
+            for ( Path child : stream )
+            {
+                children.add( child );
+            }
+        }
+        finally
+        {
+            stream.close();
+        }
+        Collections.sort( children );
+
+        ancestors.add( key );
+        long count = 0;
+        for ( Path child : children )
+        {
+            String path = relativize( root, child );
+            if ( Files.isDirectory( child ) )
+            {
+                if ( !directoryExcludes.matches( path ) && includes.couldMatchBelow( path ) )
+                {
+                    count += walkSorted( root, child, ancestors, visitor );
+                }
+            }
+            else if ( isIncluded( path ) )
+            {
+                visitor.visit( child, path );
+                count++;
+            }
+        }
+        ancestors.remove( ancestors.size() - 1 );
+        return count;
+    }
+
+    private static String relativize( Path root, Path path )
+    {
+        String relative = root.relativize( path ).toString();
+        return File.separatorChar == '/' ? relative : relative.replace( File.separatorChar, '/' );
+    }
+}
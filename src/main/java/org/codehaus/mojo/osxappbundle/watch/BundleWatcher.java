@@ -0,0 +1,376 @@
+package org.codehaus.mojo.osxappbundle.watch;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches single files and whole directory trees for changes, and hands them out in debounced batches so that a burst of
+ * writes (a jar being rebuilt, an editor saving through a temp file) is applied to the bundle only once.
+ * <p>
+ * The JDK has no native WatchService on OS X: it polls, every two seconds at best. When a poll interval is given the
+ * watcher scans the watched files itself instead, comparing modification times and sizes.
+ */
+public class BundleWatcher
+{
+
+    private static final WatchEvent.Kind<?>[] KINDS = { StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE };
+
+    /**
+     * The JDK on OS X polls for changes every ten seconds unless asked for a higher sensitivity, which is only
+     * available through a non-standard modifier.
+     */
+    private static final WatchEvent.Modifier[] MODIFIERS = sensitivityModifiers();
+
+    /**
+     * <code>null</code> when polling.
+     */
+    private final WatchService watchService;
+
+    private final long pollInterval;
+
+    /**
+     * When polling, the modification time and size of every watched file found by the last scan.
+     */
+    private Map<Path, long[]> snapshot = new HashMap<Path, long[]>();
+
+    private final Map<WatchKey, Path> directories = new HashMap<WatchKey, Path>();
+
+    private final Set<Path> files = new HashSet<Path>();
+
+    private final Set<Path> trees = new HashSet<Path>();
+
+    /**
+     * Create a watcher notified by the file system.
+     *
+     * @throws IOException If no WatchService is available
+     */
+    public BundleWatcher()
+        throws IOException
+    {
+        this( 0 );
+    }
+
+    /**
+     * @param pollInterval Milliseconds between scans of the watched files, 0 to be notified by the file system
+     * @throws IOException If no WatchService is available
+     */
+    public BundleWatcher( long pollInterval )
+        throws IOException
+    {
+        this.pollInterval = pollInterval;
+        watchService = pollInterval > 0 ? null : FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Watch a single file. Its directory is watched, but only changes to the file itself are reported.
+     *
+     * @param file The file to watch
+     * @throws IOException If the directory of the file can't be watched
+     */
+    public void watchFile( File file )
+        throws IOException
+    {
+        Path path = file.getAbsoluteFile().toPath();
+        files.add( path );
+        if ( watchService == null )
+        {
+            stat( path, snapshot );
+        }
+        else
+        {
+            register( path.getParent() );
+        }
+    }
+
+    /**
+     * Watch a directory and everything below it, including directories created later on.
+     *
+     * @param directory The root of the tree to watch
+     * @throws IOException If a directory can't be watched
+     */
+    public void watchTree( File directory )
+        throws IOException
+    {
+        Path root = directory.getAbsoluteFile().toPath();
+        trees.add( root );
+        if ( watchService == null )
+        {
+            statTree( root, snapshot );
+        }
+        else
+        {
+            registerTree( root, null );
+        }
+    }
+
+    /**
+     * Block until something changes, then keep collecting changes until nothing has happened for the debounce period.
+     *
+     * @param debounceMillis How long it has to be quiet before the changes are returned
+     * @return The changed (created, modified or deleted) files
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public Set<File> awaitChanges( long debounceMillis )
+        throws InterruptedException
+    {
+        Set<File> changes = new LinkedHashSet<File>();
+
+        if ( watchService == null )
+        {
+            long lastChange = 0;
+            while ( true )
+            {
+                Thread.sleep( pollInterval );
+                long now = System.currentTimeMillis();
+                if ( poll( changes ) )
+                {
+                    lastChange = now;
+                }
+                else if ( !changes.isEmpty() && now - lastChange >= debounceMillis )
+                {
+                    return changes;
+                }
+            }
+        }
+
+        // Events for other files in a watched directory don't count, keep waiting
+        while ( changes.isEmpty() )
+        {
+            WatchKey key = watchService.take();
+            while ( key != null )
+            {
+                collect( key, changes );
+                key = watchService.poll( debounceMillis, TimeUnit.MILLISECONDS );
+            }
+        }
+
+        return changes;
+    }
+
+    public void close()
+        throws IOException
+    {
+        if ( watchService != null )
+        {
+            watchService.close();
+        }
+    }
+
+    /**
+     * Scan the watched files and add the ones created, modified or deleted since the last scan.
+     *
+     * @return <code>true</code> if anything changed
+     */
+    private boolean poll( Set<File> changes )
+    {
+        Map<Path, long[]> current = new HashMap<Path, long[]>();
+        for ( Path file : files )
+        {
+            stat( file, current );
+        }
+        for ( Path root : trees )
+        {
+            statTree( root, current );
+        }
+
+        boolean changed = false;
+        for ( Map.Entry<Path, long[]> entry : current.entrySet() )
+        {
+            if ( !Arrays.equals( entry.getValue(), snapshot.get( entry.getKey() ) ) )
+            {
+                changes.add( entry.getKey().toFile() );
+                changed = true;
+            }
+        }
+        for ( Path path : snapshot.keySet() )
+        {
+            if ( !current.containsKey( path ) )
+            {
+                changes.add( path.toFile() );
+                changed = true;
+            }
+        }
+
+        snapshot = current;
+        return changed;
+    }
+
+    private static void stat( Path file, Map<Path, long[]> stats )
+    {
+        try
+        {
+            stats.put( file, stat( Files.readAttributes( file, BasicFileAttributes.class ) ) );
+        }
+        catch ( IOException e )
+        {
+            // not there (yet), a deleted file is reported by its absence
+        }
+    }
+
+    private static long[] stat( BasicFileAttributes attrs )
+    {
+        return new long[] { attrs.lastModifiedTime().toMillis(), attrs.size() };
+    }
+
+    private static void statTree( Path root, final Map<Path, long[]> stats )
+    {
+        try
+        {
+            Files.walkFileTree( root, new SimpleFileVisitor<Path>()
+            {
+                public FileVisitResult visitFile( Path file, BasicFileAttributes attrs )
+                {
+                    if ( attrs.isRegularFile() )
+                    {
+                        stats.put( file, stat( attrs ) );
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                public FileVisitResult visitFileFailed( Path file, IOException e )
+                {
+                    // deleted while walking, or the whole tree is gone
+                    return FileVisitResult.CONTINUE;
+                }
+            } );
+        }
+        catch ( IOException e )
+        {
+            // keep what was found, the next scan tries again
+        }
+    }
+
+    private void collect( WatchKey key, Set<File> changes )
+    {
+        Path directory = directories.get( key );
+
+        for ( WatchEvent<?> event : key.pollEvents() )
+        {
+            if ( directory == null || event.kind() == StandardWatchEventKinds.OVERFLOW )
+            {
+                continue;
+            }
+
+            Path path = directory.resolve( (Path) event.context() );
+            if ( files.contains( path ) )
+            {
+                changes.add( path.toFile() );
+            }
+            else if ( isInTree( path ) )
+            {
+                if ( event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory( path ) )
+                {
+                    // Files may have been written before the new directory was registered
+                    try
+                    {
+                        registerTree( path, changes );
+                    }
+                    catch ( IOException e )
+                    {
+                        // the directory went away again, nothing to watch
+                    }
+                }
+                else if ( !Files.isDirectory( path ) )
+                {
+                    changes.add( path.toFile() );
+                }
+            }
+        }
+
+        if ( !key.reset() )
+        {
+            directories.remove( key );
+        }
+    }
+
+    private boolean isInTree( Path path )
+    {
+        for ( Path root : trees )
+        {
+            if ( path.startsWith( root ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void registerTree( Path root, final Set<File> existingFiles )
+        throws IOException
+    {
+        Files.walkFileTree( root, new SimpleFileVisitor<Path>()
+        {
+            public FileVisitResult preVisitDirectory( Path dir, BasicFileAttributes attrs )
+                throws IOException
+            {
+                register( dir );
+                return FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult visitFile( Path file, BasicFileAttributes attrs )
+            {
+                if ( existingFiles != null )
+                {
+                    existingFiles.add( file.toFile() );
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        } );
+    }
+
+    private void register( Path directory )
+        throws IOException
+    {
+        if ( !directories.containsValue( directory ) )
+        {
+            directories.put( directory.register( watchService, KINDS, MODIFIERS ), directory );
+        }
+    }
+
+    private static WatchEvent.Modifier[] sensitivityModifiers()
+    {
+        try
+        {
+            Class<?> sensitivity = Class.forName( "com.sun.nio.file.SensitivityWatchEventModifier" );
+            return new WatchEvent.Modifier[] { (WatchEvent.Modifier) sensitivity.getField( "HIGH" ).get( null ) };
+        }
+        catch ( Exception e )
+        {
+            return new WatchEvent.Modifier[0];
+        }
+    }
+}
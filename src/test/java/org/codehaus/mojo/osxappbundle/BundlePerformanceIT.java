@@ -0,0 +1,387 @@
+package org.codehaus.mojo.osxappbundle;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Runs the bundle goal against generated projects of increasing size and compares the wall time and peak heap of each
+ * phase with perf-baseline.properties. Runs with <code>mvn verify -Pperf</code>; <code>-Dperf.threshold=1.5</code> sets
+ * the allowed slowdown factor and <code>-Dperf.updateBaseline=true</code> replaces the baseline with the results of the
+ * current machine. A phase missing from the baseline fails the test as well, so that new phases get a baseline. The
+ * results of every run are written to target/perf-results.properties and logged.
+ */
+public class BundlePerformanceIT
+    extends TestCase
+{
+
+    private static final String BASELINE = "perf-baseline.properties";
+
+    /**
+     * Phases faster than this are too noisy to compare by factor alone.
+     */
+    private static final long SLACK_MILLIS = 100;
+
+    private static final long SLACK_HEAP = 32L * 1024 * 1024;
+
+    /**
+     * Scenarios dominated by file system I/O, which varies by more than the threshold between runs on the same
+     * machine. Their regressions are logged, not failed on.
+     */
+    private static final Set REPORT_ONLY = Collections.singleton( "resources100000" );
+
+    private File directory;
+
+    protected void setUp()
+    {
+        directory = new File( System.getProperty( "basedir", "." ), "target/perf" );
+    }
+
+    public void testDependencies10()
+        throws Exception
+    {
+        run( "dependencies10", 10, 0 );
+    }
+
+    public void testDependencies100()
+        throws Exception
+    {
+        run( "dependencies100", 100, 0 );
+    }
+
+    public void testDependencies1000()
+        throws Exception
+    {
+        run( "dependencies1000", 1000, 0 );
+    }
+
+    public void testResources1000()
+        throws Exception
+    {
+        run( "resources1000", 10, 1000 );
+    }
+
+    public void testResources10000()
+        throws Exception
+    {
+        run( "resources10000", 10, 10000 );
+    }
+
+    public void testResources100000()
+        throws Exception
+    {
+        run( "resources100000", 10, 100000 );
+    }
+
+    public void testCacheMiss()
+        throws Exception
+    {
+        run( "cacheMiss", 100, 1000, false );
+    }
+
+    public void testCacheHit()
+        throws Exception
+    {
+        run( "cacheHit", 100, 1000, true );
+    }
+
+    private void run( String scenario, int dependencies, int resources )
+        throws Exception
+    {
+        run( scenario, dependencies, resources, null );
+    }
+
+    /**
+     * @param cacheHit <code>null</code> to build without a build cache, <code>false</code> to measure storing the bundle
+     *            in an empty cache, <code>true</code> to measure restoring it
+     */
+    private void run( String scenario, int dependencies, int resources, Boolean cacheHit )
+        throws Exception
+    {
+        File projectDirectory = new File( directory, scenario );
+        FileUtils.deleteDirectory( new File( projectDirectory, "target" ) );
+
+        CreateApplicationBundleMojo mojo = createMojo( scenario, projectDirectory, dependencies, resources );
+        if ( cacheHit != null )
+        {
+            File cache = new File( projectDirectory, "target/cache" );
+            TestMojos.set( mojo, "buildCache", cache.getPath() );
+            if ( cacheHit.booleanValue() )
+            {
+                mojo.execute();
+                mojo = createMojo( scenario, projectDirectory, dependencies, resources );
+                TestMojos.set( mojo, "buildCache", cache.getPath() );
+            }
+        }
+
+        System.gc();
+        long start = System.nanoTime();
+        mojo.execute();
+        long total = ( System.nanoTime() - start ) / 1000000L;
+
+        Properties results = new Properties();
+        results.setProperty( scenario + ".total.ms", String.valueOf( total ) );
+        for ( Iterator i = mojo.getPhaseTimings().getPhases().entrySet().iterator(); i.hasNext(); )
+        {
+            Map.Entry phase = (Map.Entry) i.next();
+            long[] values = (long[]) phase.getValue();
+            results.setProperty( scenario + "." + phase.getKey() + ".ms", String.valueOf( values[0] ) );
+            results.setProperty( scenario + "." + phase.getKey() + ".heap", String.valueOf( values[1] ) );
+        }
+        mojo.getLog().info( scenario + ": " + total + " ms, " + mojo.getPhaseTimings() );
+
+        store( results, new File( directory.getParentFile(), "perf-results.properties" ) );
+
+        if ( Boolean.getBoolean( "perf.updateBaseline" ) )
+        {
+            store( results, new File( System.getProperty( "basedir", "." ),
+                                      "src/test/resources/org/codehaus/mojo/osxappbundle/" + BASELINE ) );
+            return;
+        }
+
+        List regressions = compare( results, loadBaseline() );
+        if ( regressions.isEmpty() )
+        {
+            return;
+        }
+        String message = scenario + " does not meet the baseline:\n" + join( regressions );
+        if ( REPORT_ONLY.contains( scenario ) )
+        {
+            mojo.getLog().warn( message );
+        }
+        else
+        {
+            fail( message );
+        }
+    }
+
+    private List compare( Properties results, Properties baseline )
+    {
+        double threshold = Double.parseDouble( System.getProperty( "perf.threshold", "1.5" ) );
+
+        List regressions = new ArrayList();
+        for ( Iterator i = results.keySet().iterator(); i.hasNext(); )
+        {
+            String key = (String) i.next();
+            String expected = baseline.getProperty( key );
+            if ( expected == null )
+            {
+                // A new phase, record it with -Dperf.updateBaseline=true
+                regressions.add( key + " is " + results.getProperty( key ) + ", not in the baseline" );
+                continue;
+            }
+
+            long actual = Long.parseLong( results.getProperty( key ) );
+            long slack = key.endsWith( ".heap" ) ? SLACK_HEAP : SLACK_MILLIS;
+            long limit = (long) ( Long.parseLong( expected ) * threshold ) + slack;
+            if ( actual > limit )
+            {
+                regressions.add( key + " is " + actual + ", baseline " + expected + ", limit " + limit );
+            }
+        }
+        Collections.sort( regressions );
+        return regressions;
+    }
+
+    private CreateApplicationBundleMojo createMojo( String scenario, File projectDirectory, int dependencies,
+                                                    int resources )
+        throws Exception
+    {
+        Artifact artifact =
+            TestMojos.createArtifact( "perf", scenario,
+                                      createJar( new File( projectDirectory, "target/" + scenario + "-1.0.jar" ), scenario ) );
+
+        Set artifacts = new LinkedHashSet();
+        for ( int i = 0; i < dependencies; i++ )
+        {
+            Artifact dependency =
+                TestMojos.createArtifact( "perf", "lib" + i, createJar( new File( projectDirectory, "repository/lib" + i
+                    + "-1.0.jar" ), "lib" + i ) );
+            dependency.setDependencyTrail( Arrays.asList( new String[] { "perf:" + scenario + ":jar:1.0",
+                "perf:lib" + i + ":jar:1.0" } ) );
+            artifacts.add( dependency );
+        }
+
+        List additionalResources = new ArrayList();
+        if ( resources > 0 )
+        {
+            FileSet fileSet = new FileSet();
+            fileSet.setDirectory( createResources( new File( projectDirectory, "resources" ), resources ).getPath() );
+            fileSet.setUseDefaultExcludes( true );
+            additionalResources.add( fileSet );
+        }
+
+        CreateApplicationBundleMojo mojo = TestMojos.createMojo( projectDirectory, artifact, artifacts, new MavenProjectHelper()
+        {
+            public void attachArtifact( MavenProject project, String type, String classifier, File file )
+            {
+            }
+
+            public void addResource( MavenProject project, String directory, List includes, List excludes )
+            {
+            }
+
+            public void addTestResource( MavenProject project, String directory, List includes, List excludes )
+            {
+            }
+        } );
+        TestMojos.set( mojo, "additionalResources", additionalResources );
+        TestMojos.set( mojo, "timings", new PhaseTimings( true ) );
+        return mojo;
+    }
+
+    /**
+     * A jar of 20 classes, reused between runs.
+     */
+    private static File createJar( File jar, String name )
+        throws IOException
+    {
+        if ( jar.exists() )
+        {
+            return jar;
+        }
+
+        byte[] content = new byte[2048];
+        Arrays.fill( content, (byte) name.hashCode() );
+
+        Map entries = new LinkedHashMap();
+        for ( int i = 0; i < 20; i++ )
+        {
+            entries.put( "perf/" + name + "/Class" + i + ".class", content );
+        }
+        return TestJars.createJar( jar, entries );
+    }
+
+    /**
+     * A tree of small files, a hundred per directory, reused between runs.
+     */
+    private static File createResources( File root, int count )
+        throws IOException
+    {
+        File marker = new File( root.getParentFile(), root.getName() + ".complete" );
+        if ( marker.exists() )
+        {
+            return root;
+        }
+
+        byte[] content = new byte[100];
+        Arrays.fill( content, (byte) 'x' );
+        for ( int i = 0; i < count; i++ )
+        {
+            File file = new File( root, "docs/d" + ( i / 1000 ) + "/s" + ( i / 100 % 10 ) + "/file" + i + ".txt" );
+            if ( i % 100 == 0 )
+            {
+                file.getParentFile().mkdirs();
+            }
+            OutputStream out = new FileOutputStream( file );
+            try
+            {
+                out.write( content );
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        FileUtils.fileWrite( marker.getPath(), "" );
+        return root;
+    }
+
+    private Properties loadBaseline()
+        throws IOException
+    {
+        Properties baseline = new Properties();
+        InputStream in = getClass().getResourceAsStream( BASELINE );
+        if ( in != null )
+        {
+            try
+            {
+                baseline.load( in );
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        return baseline;
+    }
+
+    /**
+     * Merge properties into a file, keeping the keys of other scenarios.
+     */
+    private static void store( Properties properties, File file )
+        throws IOException
+    {
+        Properties merged = new Properties();
+        if ( file.exists() )
+        {
+            InputStream in = new FileInputStream( file );
+            try
+            {
+                merged.load( in );
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        merged.putAll( properties );
+
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream( file );
+        try
+        {
+            merged.store( out, "Bundle phase wall time (ms) and peak heap (bytes)" );
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private static String join( List lines )
+    {
+        StringBuffer buffer = new StringBuffer();
+        for ( Iterator i = lines.iterator(); i.hasNext(); )
+        {
+            buffer.append( "  " ).append( i.next() ).append( '\n' );
+        }
+        return buffer.toString();
+    }
+}
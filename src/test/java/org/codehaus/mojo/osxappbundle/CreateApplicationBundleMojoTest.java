@@ -0,0 +1,438 @@
+package org.codehaus.mojo.osxappbundle;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
+import org.codehaus.mojo.osxappbundle.cache.TestCacheServer;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.log.NullLogSystem;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.velocity.VelocityComponent;
+
+/**
+ * Runs the bundle goal in process: its Info.plist, and against the embedded HTTP build cache.
+ */
+public class CreateApplicationBundleMojoTest
+    extends TestCase
+{
+    private File directory;
+
+    private File dependencyJar;
+
+    private TestCacheServer server;
+
+    private String cacheUrl;
+
+    private boolean generateReport;
+
+    /**
+     * Whether the mojo runs as if on OS X, with the OS X tools replaced.
+     */
+    private boolean osX;
+
+    /**
+     * The bundles registered with the OS X tools by the last execution.
+     */
+    private List registered = new ArrayList();
+
+    /**
+     * The types of the artifacts attached by the last execution.
+     */
+    private List attached = new ArrayList();
+
+    /**
+     * The info and warning messages of the last execution.
+     */
+    private List messages = new ArrayList();
+
+    protected void setUp()
+        throws Exception
+    {
+        directory = new File( "target/test-mojo" ).getAbsoluteFile();
+        FileUtils.deleteDirectory( directory );
+
+        TestJars.createJar( new File( directory, "target/app-1.0.jar" ), new String[] { "com/example/Main.class" } );
+        dependencyJar =
+            TestJars.createJar( new File( directory, "repository/lib-1.0.jar" ), new String[] { "com/example/lib/Util.class" } );
+
+        server = new TestCacheServer();
+        cacheUrl = server.getUrl( "ci:secret@", "/cache" );
+    }
+
+    protected void tearDown()
+    {
+        server.stop();
+    }
+
+    public void testMissThenHit()
+        throws Exception
+    {
+        execute();
+        String key = getStoredKey();
+        assertLogged( "Build cache miss for " + key );
+        assertTrue( server.getEntries().containsKey( "/cache/" + key + "/bundle.tar.zst" ) );
+        assertTrue( server.getEntries().containsKey( "/cache/" + key + "/app.zip" ) );
+        assertEquals( Collections.singletonList( "zip" ), attached );
+
+        // Left over from an earlier build, a hit must replace the whole build directory
+        File stale = new File( directory, "target/app-1.0/stale.txt" );
+        FileUtils.fileWrite( stale.getPath(), "stale" );
+        File zip = new File( directory, "target/app-1.0-app.zip" );
+        zip.delete();
+        server.getRequests().clear();
+
+        execute();
+        assertLogged( "Restored bundle from build cache entry " + key );
+        assertEquals( Collections.EMPTY_LIST, getRequests( "PUT" ) );
+        assertFalse( stale.exists() );
+        assertTrue( new File( directory, "target/app-1.0/app.app/Contents/Info.plist" ).isFile() );
+        assertTrue( new File( directory, "target/app-1.0/app.app/Contents/Resources/Java/repo/com/example/lib/lib/1.0/lib-1.0.jar" )
+            .isFile() );
+        assertTrue( zip.isFile() );
+        assertEquals( Collections.singletonList( "zip" ), attached );
+    }
+
+    public void testHitRegistersBundleOnOsX()
+        throws Exception
+    {
+        osX = true;
+
+        execute();
+        String key = getStoredKey();
+        assertEquals( Collections.singletonList( "app.app" ), registered );
+        assertTrue( server.getEntries().containsKey( "/cache/" + key + "/app.dmg" ) );
+        assertEquals( Arrays.asList( new String[] { "dmg", "zip" } ), attached );
+
+        // The bundle attribute and signature don't survive the cache, so the restored bundle is registered again
+        server.getRequests().clear();
+        execute();
+        assertLogged( "Restored bundle from build cache entry " + key );
+        assertEquals( Collections.EMPTY_LIST, getRequests( "PUT" ) );
+        assertEquals( Collections.singletonList( "app.app" ), registered );
+        assertEquals( Arrays.asList( new String[] { "zip", "dmg" } ), attached );
+    }
+
+    public void testChangedDependencyMisses()
+        throws Exception
+    {
+        execute();
+        String key = getStoredKey();
+
+        TestJars.createJar( dependencyJar, new String[] { "com/example/lib/Util.class", "com/example/lib/More.class" } );
+        server.getRequests().clear();
+
+        execute();
+        assertFalse( getRequests( "PUT" ).isEmpty() );
+        assertFalse( key.equals( getStoredKey() ) );
+    }
+
+    public void testMissingEntryBuilds()
+        throws Exception
+    {
+        execute();
+        String key = getStoredKey();
+
+        server.getEntries().remove( "/cache/" + key + "/app.zip" );
+        server.getRequests().clear();
+
+        execute();
+        assertLogged( "Build cache entry " + key + " has no app.zip, building the bundle" );
+        assertTrue( getRequests( "PUT" ).contains( "PUT /cache/" + key + "/app.zip" ) );
+        assertEquals( Collections.singletonList( "zip" ), attached );
+    }
+
+    public void testReportBaselineIsPartOfTheKey()
+        throws Exception
+    {
+        generateReport = true;
+
+        execute();
+        String withoutBaseline = getStoredKey();
+        assertTrue( server.getEntries().containsKey( "/cache/" + withoutBaseline + "/report.txt" ) );
+
+        // The first report wrote the baseline, the second one compares against it
+        server.getRequests().clear();
+        execute();
+        String withBaseline = getStoredKey();
+        assertFalse( withoutBaseline.equals( withBaseline ) );
+
+        // Writing the same baseline again doesn't change the key
+        server.getRequests().clear();
+        execute();
+        assertLogged( "Restored bundle from build cache entry " + withBaseline );
+    }
+
+    public void testCredentialsAreNotLogged()
+        throws Exception
+    {
+        cacheUrl = server.getUrl( "ci:secret@", "/other" );
+
+        execute();
+        assertLogged( "Could not store bundle in build cache " + server.getUrl( "", "/other/" ) );
+        for ( Iterator i = messages.iterator(); i.hasNext(); )
+        {
+            String message = (String) i.next();
+            assertTrue( message, message.indexOf( "secret" ) < 0 );
+        }
+    }
+
+    public void testInfoPlist()
+        throws Exception
+    {
+        CreateApplicationBundleMojo mojo = createInfoPlistMojo();
+        InfoPlistEntry menuBar = new InfoPlistEntry();
+        menuBar.setKey( "Java/Properties/apple.laf.useScreenMenuBar" );
+        menuBar.setType( "boolean" );
+        menuBar.setValue( "true" );
+        InfoPlistEntry region = new InfoPlistEntry();
+        region.setKey( "CFBundleDevelopmentRegion" );
+        region.setValue( "German" );
+        TestMojos.set( mojo, "infoPlistEntries", Arrays.asList( new InfoPlistEntry[] { menuBar, region } ) );
+
+        mojo.stageBundle();
+
+        String plist = FileUtils.fileRead( new File( directory, "target/app-1.0/app.app/Contents/Info.plist" ), "utf-8" );
+        assertContains( plist, "\t<key>CFBundleIdentifier</key>\n\t<string>com.example.app</string>\n" );
+        assertContains( plist, "\t<key>CFBundleExecutable</key>\n\t<string>JavaApplicationStub</string>\n" );
+        assertContains( plist, "\t<key>CFBundleDevelopmentRegion</key>\n\t<string>German</string>\n" );
+        assertContains( plist, "\t<key>Java</key>\n\t<dict>\n"
+            + "\t\t<key>MainClass</key>\n\t\t<string>com.example.Main</string>\n"
+            + "\t\t<key>JVMVersion</key>\n\t\t<string>1.8+</string>\n"
+            + "\t\t<key>ClassPath</key>\n\t\t<array>\n"
+            + "\t\t\t<string>$JAVAROOT/repo/com/example/app/1.0/app-1.0.jar</string>\n"
+            + "\t\t\t<string>$JAVAROOT/repo/com/example/lib/lib/1.0/lib-1.0.jar</string>\n"
+            + "\t\t\t<string>/opt/Tom &amp; Jerry/cartoon.jar</string>\n"
+            + "\t\t</array>\n"
+            + "\t\t<key>VMOptions</key>\n\t\t<string>-Xmx64m -Dapple.awt.graphics.UseQuartz=true</string>\n"
+            + "\t\t<key>Properties</key>\n\t\t<dict>\n"
+            + "\t\t\t<key>apple.laf.useScreenMenuBar</key>\n\t\t\t<true/>\n"
+            + "\t\t</dict>\n\t</dict>\n" );
+    }
+
+    public void testInfoPlistTemplate()
+        throws Exception
+    {
+        // Declares another encoding than utf-8, so the template is merged a second time
+        File template = new File( directory, "Info.plist.vm" );
+        FileUtils.fileWrite( template.getPath(), "iso-8859-1", "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n"
+            + "<plist version=\"1.0\"><dict>\n"
+            + "<key>CFBundleIdentifier</key><string>$bundleIdentifier</string>\n"
+            + "<key>CFBundleExecutable</key><string>$cfBundleExecutable</string>\n"
+            + "<key>CFBundleGetInfoString</key><string>Caf\u00e9</string>\n"
+            + "<key>Java</key><dict><key>MainClass</key><string>$mainClass</string>\n"
+            + "<key>ClassPath</key>$classpath\n"
+            + "<key>VMOptions</key><string>$vmOptions</string></dict>\n"
+            + "</dict></plist>\n" );
+
+        CreateApplicationBundleMojo mojo = createInfoPlistMojo();
+        TestMojos.set( mojo, "dictionaryFile", template.getPath() );
+        InfoPlistEntry ignored = new InfoPlistEntry();
+        ignored.setKey( "Java/Properties/apple.laf.useScreenMenuBar" );
+        ignored.setValue( "true" );
+        TestMojos.set( mojo, "infoPlistEntries", Collections.singletonList( ignored ) );
+
+        // Outside of Maven there is no container to look the component up in
+        final VelocityEngine engine = new VelocityEngine();
+        engine.setProperty( RuntimeConstants.RUNTIME_LOG_LOGSYSTEM_CLASS, NullLogSystem.class.getName() );
+        engine.setProperty( RuntimeConstants.FILE_RESOURCE_LOADER_PATH, "" );
+        engine.init();
+        TestMojos.set( mojo, "velocity", new VelocityComponent()
+        {
+            public VelocityEngine getEngine()
+            {
+                return engine;
+            }
+        } );
+
+        mojo.stageBundle();
+
+        assertLogged( "infoPlistEntries are ignored" );
+        String plist =
+            FileUtils.fileRead( new File( directory, "target/app-1.0/app.app/Contents/Info.plist" ), "iso-8859-1" );
+        assertContains( plist, "<key>CFBundleIdentifier</key><string>com.example.app</string>" );
+        assertContains( plist, "<key>CFBundleExecutable</key><string>JavaApplicationStub</string>" );
+        assertContains( plist, "<string>Caf\u00e9</string>" );
+        assertContains( plist, "<key>MainClass</key><string>com.example.Main</string>" );
+        assertContains( plist, "<key>ClassPath</key><array>"
+            + "<string>$JAVAROOT/repo/com/example/app/1.0/app-1.0.jar</string>"
+            + "<string>$JAVAROOT/repo/com/example/lib/lib/1.0/lib-1.0.jar</string>"
+            + "<string>/opt/Tom &amp; Jerry/cartoon.jar</string></array>" );
+        assertContains( plist, "<key>VMOptions</key><string>-Xmx64m -Dapple.awt.graphics.UseQuartz=true</string>" );
+        assertFalse( plist, plist.indexOf( "apple.laf.useScreenMenuBar" ) >= 0 );
+    }
+
+    /**
+     * @return A mojo with a bundle identifier, VM options and a classpath entry that needs escaping in Info.plist
+     */
+    private CreateApplicationBundleMojo createInfoPlistMojo()
+        throws Exception
+    {
+        CreateApplicationBundleMojo mojo = createMojo();
+        TestMojos.set( mojo, "bundleIdentifier", "com.example.app" );
+        TestMojos.set( mojo, "vmOptions", "-Xmx64m -Dapple.awt.graphics.UseQuartz=true" );
+        TestMojos.set( mojo, "additionalClasspath", Collections.singletonList( "/opt/Tom & Jerry/cartoon.jar" ) );
+        return mojo;
+    }
+
+    private void execute()
+        throws Exception
+    {
+        createMojo().execute();
+    }
+
+    private CreateApplicationBundleMojo createMojo()
+        throws Exception
+    {
+        Artifact artifact = TestMojos.createArtifact( "com.example", "app", new File( directory, "target/app-1.0.jar" ) );
+        Artifact dependency = TestMojos.createArtifact( "com.example.lib", "lib", dependencyJar );
+        dependency.setDependencyTrail( Arrays.asList( new String[] { "com.example:app:jar:1.0",
+            "com.example.lib:lib:jar:1.0" } ) );
+        Set dependencies = new LinkedHashSet( Collections.singleton( dependency ) );
+
+        attached.clear();
+        messages.clear();
+        registered.clear();
+
+        final File bundle = new File( directory, "target/app-1.0/app.app" );
+        final File diskImage = new File( directory, "target/app-1.0.dmg" );
+        CreateApplicationBundleMojo mojo = new CreateApplicationBundleMojo()
+        {
+            boolean isOsX()
+            {
+                return osX;
+            }
+
+            void registerBundle()
+            {
+                assertTrue( new File( bundle, "Contents/MacOS/JavaApplicationStub" ).isFile() );
+                registered.add( bundle.getName() );
+            }
+
+            void createDiskImage()
+                throws MojoExecutionException
+            {
+                try
+                {
+                    FileUtils.fileWrite( diskImage.getPath(), "dmg" );
+                }
+                catch ( IOException e )
+                {
+                    throw new MojoExecutionException( "Could not write " + diskImage, e );
+                }
+                attached.add( "dmg" );
+            }
+        };
+        TestMojos.configure( mojo, directory, artifact, dependencies, new MavenProjectHelper()
+        {
+            public void attachArtifact( MavenProject project, String type, String classifier, File file )
+            {
+                assertTrue( file.isFile() );
+                attached.add( type );
+            }
+
+            public void addResource( MavenProject project, String directory, List includes, List excludes )
+            {
+            }
+
+            public void addTestResource( MavenProject project, String directory, List includes, List excludes )
+            {
+            }
+        } );
+        TestMojos.set( mojo, "buildCache", cacheUrl );
+        TestMojos.set( mojo, "generateReport", Boolean.valueOf( generateReport ) );
+        mojo.setLog( new SystemStreamLog()
+        {
+            public void info( CharSequence content )
+            {
+                messages.add( content.toString() );
+            }
+
+            public void warn( CharSequence content )
+            {
+                messages.add( content.toString() );
+            }
+
+            public void warn( CharSequence content, Throwable error )
+            {
+                messages.add( content.toString() + " " + error );
+            }
+        } );
+        return mojo;
+    }
+
+    /**
+     * @return The key of the last bundle stored in the cache
+     */
+    private String getStoredKey()
+    {
+        List puts = getRequests( "PUT" );
+        assertFalse( "Nothing was stored", puts.isEmpty() );
+        String path = (String) puts.get( puts.size() - 1 );
+        return path.substring( "PUT /cache/".length(), path.lastIndexOf( '/' ) );
+    }
+
+    private List getRequests( String method )
+    {
+        List requests = new ArrayList();
+        synchronized ( server.getRequests() )
+        {
+            for ( Iterator i = server.getRequests().iterator(); i.hasNext(); )
+            {
+                String request = (String) i.next();
+                if ( request.startsWith( method + " " ) )
+                {
+                    requests.add( request );
+                }
+            }
+        }
+        return requests;
+    }
+
+    private static void assertContains( String text, String expected )
+    {
+        assertTrue( text, text.indexOf( expected ) >= 0 );
+    }
+
+    private void assertLogged( String text )
+    {
+        for ( Iterator i = messages.iterator(); i.hasNext(); )
+        {
+            if ( ( (String) i.next() ).indexOf( text ) >= 0 )
+            {
+                return;
+            }
+        }
+        fail( "No message containing \"" + text + "\" in " + messages );
+    }
+}
@@ -0,0 +1,90 @@
+package org.codehaus.mojo.osxappbundle;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.codehaus.mojo.osxappbundle.plist.PlistArray;
+import org.codehaus.mojo.osxappbundle.plist.PlistBoolean;
+import org.codehaus.mojo.osxappbundle.plist.PlistDate;
+import org.codehaus.mojo.osxappbundle.plist.PlistInteger;
+import org.codehaus.mojo.osxappbundle.plist.PlistString;
+
+public class InfoPlistEntryTest
+    extends TestCase
+{
+
+    public void testTypes()
+    {
+        assertEquals( " padded ", ( (PlistString) entry( null, " padded " ).toPlistValue() ).getValue() );
+        assertSame( PlistBoolean.TRUE, entry( "boolean", "true" ).toPlistValue() );
+        assertEquals( -3, ( (PlistInteger) entry( "integer", " -3 " ).toPlistValue() ).getValue() );
+        assertEquals( 1218283200000L,
+                      ( (PlistDate) entry( "date", "2008-08-09T12:00:00Z" ).toPlistValue() ).getValue().getTime() );
+    }
+
+    public void testArray()
+    {
+        InfoPlistEntry entry = entry( "integer", null );
+        entry.setValues( Arrays.asList( new String[] { "1", "2" } ) );
+
+        PlistArray array = (PlistArray) entry.toPlistValue();
+        assertEquals( 2, array.size() );
+        assertEquals( 2, ( (PlistInteger) array.getValues().get( 1 ) ).getValue() );
+    }
+
+    public void testKeyPath()
+    {
+        InfoPlistEntry entry = entry( null, "true" );
+        entry.setKey( "Java/Properties/apple.laf.useScreenMenuBar" );
+        assertEquals( Arrays.asList( new String[] { "Java", "Properties", "apple.laf.useScreenMenuBar" } ),
+                      Arrays.asList( entry.getKeyPath() ) );
+    }
+
+    public void testInvalid()
+    {
+        assertInvalid( entry( "boolean", "yes" ) );
+        assertInvalid( entry( "integer", "1.5" ) );
+        assertInvalid( entry( "date", "yesterday" ) );
+        assertInvalid( entry( "data", "AAAA" ) );
+        assertInvalid( entry( null, null ) );
+    }
+
+    private static InfoPlistEntry entry( String type, String value )
+    {
+        InfoPlistEntry entry = new InfoPlistEntry();
+        entry.setKey( "Key" );
+        entry.setType( type );
+        entry.setValue( value );
+        return entry;
+    }
+
+    private static void assertInvalid( InfoPlistEntry entry )
+    {
+        try
+        {
+            entry.toPlistValue();
+            fail( entry + " is not valid" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().indexOf( "Key" ) >= 0 );
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.codehaus.mojo.osxappbundle;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Creates the jars the tests bundle, report on and extract from.
+ */
+public final class TestJars
+{
+
+    private TestJars()
+    {
+    }
+
+    /**
+     * @param names The entry names
+     * @return Entries whose content is their own name, in the given order, to add more entries to
+     */
+    public static Map<String, byte[]> namedEntries( String[] names )
+        throws IOException
+    {
+        Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+        for ( int i = 0; i < names.length; i++ )
+        {
+            entries.put( names[i], names[i].getBytes( "utf-8" ) );
+        }
+        return entries;
+    }
+
+    /**
+     * Creates a jar whose entries contain their own name.
+     */
+    public static File createJar( File jar, String[] names )
+        throws IOException
+    {
+        return createJar( jar, namedEntries( names ) );
+    }
+
+    /**
+     * Creates a jar with the given entries, in iteration order, and the directories it is in.
+     */
+    public static File createJar( File jar, Map<String, byte[]> entries )
+        throws IOException
+    {
+        jar.getParentFile().mkdirs();
+
+        ZipOutputStream out = new ZipOutputStream( new FileOutputStream( jar ) );
+        try
+        {
+            for ( Iterator<Map.Entry<String, byte[]>> i = entries.entrySet().iterator(); i.hasNext(); )
+            {
+                Map.Entry<String, byte[]> entry = i.next();
+                out.putNextEntry( new ZipEntry( entry.getKey() ) );
+                out.write( entry.getValue() );
+                out.closeEntry();
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        return jar;
+    }
+}
@@ -0,0 +1,125 @@
+package org.codehaus.mojo.osxappbundle;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.ReflectionUtils;
+
+/**
+ * Creates bundle mojos outside of Maven, configured with the defaults of the plugin descriptor.
+ */
+public final class TestMojos
+{
+
+    private TestMojos()
+    {
+    }
+
+    /**
+     * @return A version 1.0 jar artifact of the given file
+     */
+    public static Artifact createArtifact( String groupId, String artifactId, File file )
+    {
+        Artifact artifact =
+            new DefaultArtifact( groupId, artifactId, VersionRange.createFromVersion( "1.0" ), Artifact.SCOPE_COMPILE,
+                                 "jar", null, new DefaultArtifactHandler( "jar" ) );
+        artifact.setFile( file );
+        return artifact;
+    }
+
+    /**
+     * Create a mojo bundling a project into <code>target/artifactId-1.0</code> below the project directory, with a
+     * dummy stub and <code>groupId.Main</code> as main class.
+     *
+     * @param projectDirectory The base directory of the project
+     * @param artifact The project artifact
+     * @param dependencies The runtime dependencies of the project
+     * @param projectHelper Receives the attached artifacts
+     * @return The configured mojo
+     */
+    public static CreateApplicationBundleMojo createMojo( File projectDirectory, Artifact artifact, Set dependencies,
+                                                          MavenProjectHelper projectHelper )
+        throws Exception
+    {
+        return configure( new CreateApplicationBundleMojo(), projectDirectory, artifact, dependencies, projectHelper );
+    }
+
+    /**
+     * Configure a mojo, for instance a subclass replacing the OS X tools, like {@link #createMojo(File, Artifact, Set,
+     * MavenProjectHelper)} does.
+     *
+     * @return The configured mojo
+     */
+    public static CreateApplicationBundleMojo configure( CreateApplicationBundleMojo mojo, File projectDirectory,
+                                                         Artifact artifact, Set dependencies,
+                                                         MavenProjectHelper projectHelper )
+        throws Exception
+    {
+        String name = artifact.getArtifactId();
+
+        Model model = new Model();
+        model.setGroupId( artifact.getGroupId() );
+        model.setArtifactId( name );
+        model.setVersion( "1.0" );
+        MavenProject project = new MavenProject( model );
+        project.setFile( new File( projectDirectory, "pom.xml" ) );
+        project.setArtifact( artifact );
+        project.setArtifacts( dependencies );
+
+        File stub = new File( projectDirectory, "JavaApplicationStub" );
+        FileUtils.fileWrite( stub.getPath(), "#!/bin/sh\n" );
+
+        File target = new File( projectDirectory, "target" );
+
+        set( mojo, "project", project );
+        set( mojo, "buildDirectory", new File( target, name + "-1.0" ) );
+        set( mojo, "diskImageFile", new File( target, name + "-1.0.dmg" ) );
+        set( mojo, "zipFile", new File( target, name + "-1.0-app.zip" ) );
+        set( mojo, "javaApplicationStub", stub );
+        set( mojo, "mainClass", artifact.getGroupId() + ".Main" );
+        set( mojo, "bundleName", name );
+        set( mojo, "version", "1.0" );
+        set( mojo, "jvmVersion", "1.8+" );
+        set( mojo, "nativeLibraryDirectory", "MacOS" );
+        set( mojo, "additionalResources", new ArrayList() );
+        set( mojo, "keepJavaApplicationStubName", Boolean.TRUE );
+        set( mojo, "reportFile", new File( target, name + "-1.0-bundle-report.txt" ) );
+        set( mojo, "reportBaselineFile", new File( target, "bundle-report-baseline.properties" ) );
+        set( mojo, "buildCacheUpload", Boolean.TRUE );
+        set( mojo, "buildCacheTimeout", Integer.valueOf( 30000 ) );
+        set( mojo, "launcherRuntimeDirectory", "runtime/Contents/Home" );
+        set( mojo, "projectHelper", projectHelper );
+        return mojo;
+    }
+
+    public static void set( Object object, String field, Object value )
+        throws IllegalAccessException
+    {
+        ReflectionUtils.setVariableValueInObject( object, field, value );
+    }
+}
@@ -0,0 +1,130 @@
+package org.codehaus.mojo.osxappbundle;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Applies changes to a bundle staged by the watch goal.
+ */
+public class WatchApplicationBundleMojoTest
+    extends TestCase
+{
+    private File directory;
+
+    private File resources;
+
+    private Artifact artifact;
+
+    protected void setUp()
+        throws Exception
+    {
+        directory = new File( "target/test-watch-mojo" ).getAbsoluteFile();
+        FileUtils.deleteDirectory( directory );
+
+        artifact = TestMojos.createArtifact( "com.example", "app", new File( directory, "target/app-1.0.jar" ) );
+        TestJars.createJar( artifact.getFile(), new String[] { "com/example/Main.class" } );
+
+        resources = new File( directory, "src/main/app-resources" );
+        String[] files = { "README.txt", "docs/index.html", "docs/guide/index.html", "docs/notes.bak" };
+        for ( int i = 0; i < files.length; i++ )
+        {
+            File file = new File( resources, files[i] );
+            file.getParentFile().mkdirs();
+            FileUtils.fileWrite( file.getPath(), files[i] );
+        }
+    }
+
+    public void testDeletedDirectoryIsRemoved()
+        throws Exception
+    {
+        WatchApplicationBundleMojo mojo = createMojo();
+        mojo.stageBundle();
+
+        File staged = new File( directory, "target/app-1.0/docs" );
+        assertTrue( new File( staged, "guide/index.html" ).isFile() );
+        assertFalse( new File( staged, "notes.bak" ).exists() );
+        // Excluded from the resources, so not theirs to remove
+        File other = new File( staged, "other.bak" );
+        FileUtils.fileWrite( other.getPath(), "other" );
+
+        File docs = new File( resources, "docs" );
+        FileUtils.deleteDirectory( docs );
+        mojo.applyChanges( Collections.singleton( docs ) );
+
+        assertFalse( new File( staged, "index.html" ).exists() );
+        assertFalse( new File( staged, "guide" ).exists() );
+        assertTrue( other.isFile() );
+        assertTrue( new File( directory, "target/app-1.0/README.txt" ).isFile() );
+
+        other.delete();
+        mojo.applyChanges( Collections.singleton( docs ) );
+        assertFalse( staged.exists() );
+    }
+
+    public void testUnbuiltArtifactFails()
+        throws Exception
+    {
+        artifact.setFile( null );
+        try
+        {
+            createMojo().execute();
+            fail( "Watched a project that wasn't packaged" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().indexOf( "run the package phase first" ) >= 0 );
+        }
+    }
+
+    private WatchApplicationBundleMojo createMojo()
+        throws Exception
+    {
+        WatchApplicationBundleMojo mojo = new WatchApplicationBundleMojo();
+        TestMojos.configure( mojo, directory, artifact, Collections.EMPTY_SET, new MavenProjectHelper()
+        {
+            public void attachArtifact( MavenProject project, String type, String classifier, File file )
+            {
+                fail( "The watch goal attached " + file );
+            }
+
+            public void addResource( MavenProject project, String directory, List includes, List excludes )
+            {
+            }
+
+            public void addTestResource( MavenProject project, String directory, List includes, List excludes )
+            {
+            }
+        } );
+
+        FileSet fileSet = new FileSet();
+        fileSet.setDirectory( "src/main/app-resources" );
+        fileSet.setExcludes( Collections.singletonList( "**/*.bak" ) );
+        TestMojos.set( mojo, "additionalResources", Collections.singletonList( fileSet ) );
+        return mojo;
+    }
+}
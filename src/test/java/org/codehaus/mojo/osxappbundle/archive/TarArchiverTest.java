@@ -0,0 +1,303 @@
+package org.codehaus.mojo.osxappbundle.archive;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.apache.commons.io.IOUtils;
+import org.codehaus.plexus.util.FileUtils;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZInputStream;
+
+import com.github.luben.zstd.ZstdInputStream;
+
+public class TarArchiverTest
+    extends TestCase
+{
+    private File directory;
+
+    private File bundle;
+
+    protected void setUp()
+        throws Exception
+    {
+        directory = new File( "target/test-tar" );
+        FileUtils.deleteDirectory( directory );
+
+        bundle = new File( directory, "build/App.app" );
+        new File( bundle, "Contents/MacOS" ).mkdirs();
+        FileUtils.fileWrite( new File( bundle, "Contents/MacOS/App" ).getPath(), "#!/bin/sh" );
+        FileUtils.fileWrite( new File( bundle, "Contents/Info.plist" ).getPath(), "<plist/>" );
+        FileUtils.fileWrite( new File( bundle, "Contents/MacOS/helper" ).getPath(), "#!/bin/sh" );
+        new File( bundle, "Contents/MacOS/helper" ).setExecutable( true, false );
+        Files.createSymbolicLink( Paths.get( bundle.getPath(), "Contents/Current" ), Paths.get( "MacOS" ) );
+    }
+
+    public void testZstd()
+        throws IOException
+    {
+        File archive = new File( directory, "app.tar.zst" );
+        new TarArchiver( TarArchiver.getFormat( "tar.zst" ), 2 ).createArchive( new File( directory, "build" ),
+                                                                              Collections.singleton( "build/App.app/Contents/MacOS/App" ),
+                                                                              archive );
+
+        assertEntries( readTar( new ZstdInputStream( new FileInputStream( archive ) ) ) );
+    }
+
+    public void testXz()
+        throws IOException
+    {
+        File archive = new File( directory, "app.tar.xz" );
+        new TarArchiver( TarArchiver.getFormat( "TAR.XZ" ), 2 ).createArchive( new File( directory, "build" ),
+                                                                             Collections.singleton( "build/App.app/Contents/MacOS/App" ),
+                                                                             archive );
+
+        assertEntries( readTar( new XZInputStream( new BufferedInputStream( new FileInputStream( archive ) ) ) ) );
+    }
+
+    public void testExtract()
+        throws IOException
+    {
+        File archive = new File( directory, "app.tar.zst" );
+        TarArchiver archiver = new TarArchiver( TarArchiver.getFormat( "tar.zst" ), 1 );
+        archiver.createArchive( new File( directory, "build" ), Collections.singleton( "build/App.app/Contents/MacOS/App" ),
+                                archive );
+
+        File extracted = new File( directory, "extracted" );
+        archiver.extractArchive( archive, extracted );
+
+        File app = new File( extracted, "build/App.app/Contents" );
+        assertEquals( "<plist/>", FileUtils.fileRead( new File( app, "Info.plist" ) ) );
+        assertTrue( new File( app, "MacOS/App" ).canExecute() );
+        assertFalse( new File( app, "Info.plist" ).canExecute() );
+        assertEquals( "MacOS", Files.readSymbolicLink( new File( app, "Current" ).toPath() ).toString() );
+    }
+
+    public void testExtractRejectsLinksOutside()
+        throws IOException
+    {
+        File outside = new File( directory, "outside" ).getAbsoluteFile();
+        outside.mkdirs();
+
+        File archive = createHostileArchive( new String[][] { { "build/etc", null, outside.getPath() },
+            { "build/etc/passwd", "owned", null } } );
+        assertExtractFails( archive, "links to" );
+        assertFalse( new File( directory, "extracted/build/etc" ).exists() );
+
+        archive = createHostileArchive( new String[][] { { "build/up", null, "../../outside" } } );
+        assertExtractFails( archive, "links to" );
+        assertFalse( new File( outside, "passwd" ).exists() );
+    }
+
+    public void testExtractRejectsWritesThroughLinks()
+        throws IOException
+    {
+        File outside = new File( directory, "outside" ).getAbsoluteFile();
+        outside.mkdirs();
+
+        // Left behind in the build directory, not part of the archive
+        File extracted = new File( directory, "extracted" );
+        new File( extracted, "build" ).mkdirs();
+        Files.createSymbolicLink( new File( extracted, "build/etc" ).toPath(), outside.toPath() );
+
+        assertExtractFails( createHostileArchive( new String[][] { { "build/etc/passwd", "owned", null } } ),
+                            "symbolic link" );
+        assertExtractFails( createHostileArchive( new String[][] { { "build/etc/", null, null } } ), "symbolic link" );
+        assertFalse( new File( outside, "passwd" ).exists() );
+
+        // A link inside the directory is fine, but not writing through it
+        assertExtractFails( createHostileArchive( new String[][] { { "build/real/", null, null },
+            { "build/alias", null, "real" }, { "build/alias/file", "data", null } } ), "symbolic link" );
+        assertTrue( Files.isSymbolicLink( new File( extracted, "build/alias" ).toPath() ) );
+        assertFalse( new File( extracted, "build/real/file" ).exists() );
+    }
+
+    public void testUnknownFormat()
+    {
+        assertNull( TarArchiver.getFormat( "tar.bz2" ) );
+    }
+
+    public void testParallelXzBlocksConcatenate()
+        throws IOException
+    {
+        byte[] data = new byte[300000];
+        new Random( 42 ).nextBytes( data );
+        for ( int i = 0; i < data.length; i += 3 )
+        {
+            data[i] = 0;
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ParallelXZOutputStream xz = new ParallelXZOutputStream( compressed, new LZMA2Options( 1 ), 3, 64 * 1024 );
+        xz.write( data, 0, 1000 );
+        xz.write( data, 1000, data.length - 1000 );
+        xz.close();
+
+        byte[] decompressed = IOUtils.toByteArray( new XZInputStream( new ByteArrayInputStream( compressed.toByteArray() ) ) );
+        assertTrue( Arrays.equals( data, decompressed ) );
+
+        compressed.reset();
+        new ParallelXZOutputStream( compressed, new LZMA2Options( 1 ), 3, 64 * 1024 ).close();
+        assertEquals( -1, new XZInputStream( new ByteArrayInputStream( compressed.toByteArray() ) ).read() );
+    }
+
+    public void testParallelXzClosesOnFailure()
+        throws IOException
+    {
+        final boolean[] closed = new boolean[1];
+        OutputStream failing = new OutputStream()
+        {
+            public void write( int b )
+                throws IOException
+            {
+                throw new IOException( "Disk full" );
+            }
+
+            public void write( byte[] buffer, int offset, int length )
+                throws IOException
+            {
+                throw new IOException( "Disk full" );
+            }
+
+            public void close()
+            {
+                closed[0] = true;
+            }
+        };
+
+        ParallelXZOutputStream xz = new ParallelXZOutputStream( failing, new LZMA2Options( 1 ), 2, 64 * 1024 );
+        xz.write( new byte[1000] );
+        try
+        {
+            xz.close();
+            fail( "Wrote to a full disk" );
+        }
+        catch ( IOException e )
+        {
+            assertEquals( "Disk full", e.getMessage() );
+        }
+        assertTrue( closed[0] );
+    }
+
+    /**
+     * @param entries Name, content and link target of each entry; names ending with '/' are directories
+     */
+    private File createHostileArchive( String[][] entries )
+        throws IOException
+    {
+        File archive = new File( directory, "hostile.tar.zst" );
+        TarArchiveOutputStream tar =
+            new TarArchiveOutputStream( TarArchiver.getFormat( "tar.zst" ).compress( new FileOutputStream( archive ), 1 ) );
+        try
+        {
+            for ( int i = 0; i < entries.length; i++ )
+            {
+                TarArchiveEntry entry;
+                byte[] content = new byte[0];
+                if ( entries[i][2] != null )
+                {
+                    entry = new TarArchiveEntry( entries[i][0], TarConstants.LF_SYMLINK );
+                    entry.setLinkName( entries[i][2] );
+                }
+                else
+                {
+                    entry = new TarArchiveEntry( entries[i][0] );
+                    if ( entries[i][1] != null )
+                    {
+                        content = entries[i][1].getBytes( "utf-8" );
+                        entry.setSize( content.length );
+                    }
+                }
+                tar.putArchiveEntry( entry );
+                tar.write( content );
+                tar.closeArchiveEntry();
+            }
+        }
+        finally
+        {
+            tar.close();
+        }
+        return archive;
+    }
+
+    private void assertExtractFails( File archive, String message )
+    {
+        try
+        {
+            new TarArchiver( TarArchiver.getFormat( "tar.zst" ), 1 ).extractArchive( archive, new File( directory,
+                                                                                                        "extracted" ) );
+            fail( "Extracted a hostile archive" );
+        }
+        catch ( IOException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().indexOf( message ) >= 0 );
+        }
+    }
+
+    private void assertEntries( Map entries )
+    {
+        assertEquals( 0755, ( (TarArchiveEntry) entries.get( "build/App.app/Contents/MacOS/App" ) ).getMode() & 0777 );
+        assertEquals( 0755, ( (TarArchiveEntry) entries.get( "build/App.app/Contents/MacOS/helper" ) ).getMode() & 0777 );
+        assertEquals( 0, ( (TarArchiveEntry) entries.get( "build/App.app/Contents/Info.plist" ) ).getMode() & 0111 );
+        assertTrue( ( (TarArchiveEntry) entries.get( "build/" ) ).isDirectory() );
+
+        TarArchiveEntry link = (TarArchiveEntry) entries.get( "build/App.app/Contents/Current" );
+        assertTrue( link.isSymbolicLink() );
+        assertEquals( "MacOS", link.getLinkName() );
+    }
+
+    private Map readTar( InputStream in )
+        throws IOException
+    {
+        Map entries = new HashMap();
+        TarArchiveInputStream tar = new TarArchiveInputStream( in );
+        try
+        {
+            TarArchiveEntry entry;
+            while ( ( entry = tar.getNextEntry() ) != null )
+            {
+                entries.put( entry.getName(), entry );
+            }
+        }
+        finally
+        {
+            tar.close();
+        }
+        return entries;
+    }
+}
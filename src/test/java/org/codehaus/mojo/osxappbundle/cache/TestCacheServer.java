@@ -0,0 +1,134 @@
+package org.codehaus.mojo.osxappbundle.cache;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An embedded HTTP build cache that keeps the entries PUT below <code>/cache/</code> in memory and answers GETs for
+ * them. Any other path answers 404.
+ */
+public class TestCacheServer
+{
+
+    private final HttpServer server;
+
+    /**
+     * The entries stored on the server, by path.
+     */
+    private final Map<String, byte[]> entries = Collections.synchronizedMap( new HashMap<String, byte[]>() );
+
+    private final Map<String, String> authorizations = Collections.synchronizedMap( new HashMap<String, String>() );
+
+    private final List<String> requests = Collections.synchronizedList( new ArrayList<String>() );
+
+    public TestCacheServer()
+        throws IOException
+    {
+        server = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+        server.createContext( "/cache/", new HttpHandler()
+        {
+            public void handle( HttpExchange exchange )
+                throws IOException
+            {
+                String path = exchange.getRequestURI().getPath();
+                requests.add( exchange.getRequestMethod() + " " + path );
+                authorizations.put( path, exchange.getRequestHeaders().getFirst( "Authorization" ) );
+
+                // Read the body of every request, the connection is not reused correctly otherwise
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                InputStream in = exchange.getRequestBody();
+                IOUtils.copy( in, body );
+                in.close();
+
+                if ( "PUT".equals( exchange.getRequestMethod() ) )
+                {
+                    entries.put( path, body.toByteArray() );
+                    exchange.sendResponseHeaders( 201, -1 );
+                }
+                else if ( entries.containsKey( path ) )
+                {
+                    byte[] entry = entries.get( path );
+                    exchange.sendResponseHeaders( 200, entry.length );
+                    OutputStream out = exchange.getResponseBody();
+                    out.write( entry );
+                    out.close();
+                }
+                else
+                {
+                    exchange.sendResponseHeaders( 404, -1 );
+                }
+                exchange.close();
+            }
+        } );
+        server.start();
+    }
+
+    public void stop()
+    {
+        server.stop( 0 );
+    }
+
+    /**
+     * @param userInfo Credentials followed by '@', or an empty string
+     * @param path The path below the server root, <code>/cache</code> for the cache itself
+     * @return The URL of the path on this server
+     */
+    public String getUrl( String userInfo, String path )
+    {
+        return "http://" + userInfo + "127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * @return The stored entries by path, can be changed
+     */
+    public Map<String, byte[]> getEntries()
+    {
+        return entries;
+    }
+
+    /**
+     * @return The Authorization header of the last request to each path
+     */
+    public Map<String, String> getAuthorizations()
+    {
+        return authorizations;
+    }
+
+    /**
+     * @return Method and path of every request, in order
+     */
+    public List<String> getRequests()
+    {
+        return requests;
+    }
+}
@@ -0,0 +1,222 @@
+package org.codehaus.mojo.osxappbundle.launcher;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.IOUtils;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Runs generated launchers with /bin/sh against a fake <code>java</code> that prints its arguments, and against the
+ * running JVM.
+ */
+public class LauncherScriptTest
+    extends TestCase
+{
+    private File directory;
+
+    private File contents;
+
+    private File launcher;
+
+    private File fakeJava;
+
+    protected void setUp()
+        throws Exception
+    {
+        directory = new File( "target/test-launcher" ).getAbsoluteFile();
+        FileUtils.deleteDirectory( directory );
+
+        contents = new File( directory, "My App.app/Contents" ).getCanonicalFile();
+        new File( contents, "MacOS" ).mkdirs();
+        new File( contents, "Resources/Java/repo" ).mkdirs();
+        launcher = new File( contents, "MacOS/My App" );
+
+        fakeJava = new File( directory, "fake-java" );
+        FileUtils.fileWrite( fakeJava.getPath(), "#!/bin/sh\necho \"cwd=$(pwd -P)\"\nfor arg; do echo \"arg=$arg\"; done\n" );
+        fakeJava.setExecutable( true, false );
+    }
+
+    public void testEmbeddedRuntime()
+        throws Exception
+    {
+        installJava( new File( contents, "runtime/Contents/Home/bin/java" ) );
+
+        LauncherScript script =
+            new LauncherScript( "My App", "com.example.Main", Arrays.asList( new String[] { "$JAVAROOT/repo/a.jar",
+                "/opt/lib/b c.jar" } ) );
+        script.setRuntimeDirectory( "runtime/Contents/Home" );
+        script.setVmOptions( " -Xmx64m  -Djna.boot.library.path=$APP_PACKAGE/Contents/MacOS -Dliteral=$HOME`id`\"x\" " );
+        script.setTieredStartup( true );
+
+        List output = launch( script, null, new String[] { "one", "two words" } );
+
+        assertEquals( Arrays.asList( new String[] { "cwd=" + new File( "" ).getCanonicalPath(),
+            "arg=-XX:TieredStopAtLevel=1", "arg=-Xmx64m",
+            "arg=-Djna.boot.library.path=" + contents.getParent() + "/Contents/MacOS",
+            "arg=-Dliteral=$HOME`id`\"x\"", "arg=-cp",
+            "arg=" + contents + "/Resources/Java/repo/a.jar:/opt/lib/b c.jar", "arg=com.example.Main", "arg=one",
+            "arg=two words" } ), output );
+    }
+
+    public void testJavaHome()
+        throws Exception
+    {
+        File home = new File( directory, "jdk" );
+        installJava( new File( home, "bin/java" ) );
+
+        LauncherScript script = new LauncherScript( "My App", "com.example.Main", Collections.singletonList( "$JAVAROOT/a.jar" ) );
+        script.setRuntimeDirectory( "runtime/Contents/Home" );
+
+        List output = launch( script, home, new String[0] );
+        assertEquals( "arg=com.example.Main", output.get( output.size() - 1 ) );
+    }
+
+    public void testArgFile()
+        throws Exception
+    {
+        installJava( new File( contents, "runtime/Contents/Home/bin/java" ) );
+
+        LauncherScript script =
+            new LauncherScript( "My App", "com.example.Main", Arrays.asList( new String[] { "$JAVAROOT/repo/a.jar",
+                "/opt/lib/b\"c.jar" } ) );
+        script.setRuntimeDirectory( "runtime/Contents/Home" );
+        script.setArgFile( "launcher.args" );
+
+        assertEquals( "-cp\n\"repo/a.jar:/opt/lib/b\\\"c.jar\"\n", script.generateArgFile() );
+        File argFile = new File( contents, "Resources/Java/launcher.args" );
+        FileUtils.fileWrite( argFile.getPath(), script.generateArgFile() );
+
+        // The JVM gets a copy with absolute paths, so it can start in the caller's directory
+        File cached = new File( directory, ".cache/My App/launcher.args" );
+        List output = launch( script, null, new String[] { "arg" } );
+        assertEquals( Arrays.asList( new String[] { "cwd=" + new File( "" ).getCanonicalPath(), "arg=@" + cached,
+            "arg=com.example.Main", "arg=arg" } ), output );
+        assertEquals( "# " + contents.getParent() + "\n-cp\n\"" + contents + "/Resources/Java/repo/a.jar:/opt/lib/b\\\"c.jar\"\n",
+                      FileUtils.fileRead( cached ) );
+
+        // Made again when the bundle moves
+        FileUtils.fileWrite( cached.getPath(), "# /Applications/My App.app\n-cp\n\"/Applications/My App.app/a.jar\"\n" );
+        launch( script, null, new String[0] );
+        assertTrue( FileUtils.fileRead( cached ).startsWith( "# " + contents.getParent() + "\n" ) );
+    }
+
+    public void testLaunchJvmWithArgFile()
+        throws Exception
+    {
+        File classes = new File( contents, "Resources/Java/classes" );
+        String name = Main.class.getName().replace( '.', '/' ) + ".class";
+        FileUtils.copyURLToFile( Main.class.getResource( "/" + name ), new File( classes, name ) );
+
+        LauncherScript script = new LauncherScript( "My App", Main.class.getName(), Collections.singletonList( "$JAVAROOT/classes" ) );
+        script.setVmOptions( "-Dgreeting=hello" );
+        script.setArgFile( "launcher.args" );
+        FileUtils.fileWrite( new File( contents, "Resources/Java/launcher.args" ).getPath(), script.generateArgFile() );
+
+        List output = launch( script, new File( System.getProperty( "java.home" ) ), new String[] { "one" } );
+        assertTrue( output.toString(), output.contains( "hello [one]" ) );
+    }
+
+    public void testArgFileVariables()
+    {
+        LauncherScript script = new LauncherScript( "My App", "com.example.Main", Collections.singletonList( "$HOME/a.jar" ) );
+        script.setArgFile( "launcher.args" );
+        try
+        {
+            script.generateArgFile();
+            fail( "$HOME can't be expanded in an argument file" );
+        }
+        catch ( IllegalStateException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().indexOf( "$HOME/a.jar" ) >= 0 );
+        }
+    }
+
+    public void testLaunchJvm()
+        throws Exception
+    {
+        String testClasses = new File( Main.class.getProtectionDomain().getCodeSource().getLocation().toURI() ).getPath();
+
+        LauncherScript script = new LauncherScript( "My App", Main.class.getName(), Collections.singletonList( testClasses ) );
+        script.setVmOptions( "-Dgreeting=hello" );
+        script.setClassDataSharing( true );
+        script.setTieredStartup( true );
+
+        List output = launch( script, new File( System.getProperty( "java.home" ) ), new String[] { "one", "two words" } );
+        assertTrue( output.toString(), output.contains( "hello [one, two words]" ) );
+    }
+
+    public void testQuote()
+    {
+        assertEquals( "\"${JAVAROOT}/a b.jar\"", LauncherScript.quote( "$JAVAROOT/a b.jar" ) );
+        assertEquals( "\"${APP_PACKAGE}/x\"", LauncherScript.quote( "${APP_PACKAGE}/x" ) );
+        assertEquals( "\"\\$HOME \\`id\\` \\\" \\\\\"", LauncherScript.quote( "$HOME `id` \" \\" ) );
+    }
+
+    public static class Main
+    {
+        public static void main( String[] args )
+        {
+            System.out.println( System.getProperty( "greeting" ) + " " + Arrays.asList( args ) );
+        }
+    }
+
+    private void installJava( File java )
+        throws IOException
+    {
+        java.getParentFile().mkdirs();
+        FileUtils.copyFile( fakeJava, java );
+        java.setExecutable( true, false );
+    }
+
+    private List launch( LauncherScript script, File javaHome, String[] args )
+        throws Exception
+    {
+        FileUtils.fileWrite( launcher.getPath(), script.generate() );
+        launcher.setExecutable( true, false );
+
+        List command = new ArrayList();
+        command.add( "/bin/sh" );
+        command.add( launcher.getPath() );
+        command.addAll( Arrays.asList( args ) );
+
+        ProcessBuilder builder = new ProcessBuilder( command );
+        Map environment = builder.environment();
+        environment.remove( "JAVA_HOME" );
+        if ( javaHome != null )
+        {
+            environment.put( "JAVA_HOME", javaHome.getPath() );
+        }
+        environment.put( "HOME", directory.getPath() );
+        environment.remove( "XDG_CACHE_HOME" );
+        builder.redirectErrorStream( true );
+
+        Process process = builder.start();
+        List output = IOUtils.readLines( process.getInputStream() );
+        assertEquals( output.toString(), 0, process.waitFor() );
+        return output;
+    }
+}
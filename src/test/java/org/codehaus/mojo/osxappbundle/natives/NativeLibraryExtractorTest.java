@@ -0,0 +1,109 @@
+package org.codehaus.mojo.osxappbundle.natives;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.codehaus.mojo.osxappbundle.TestJars;
+import org.codehaus.plexus.util.FileUtils;
+
+public class NativeLibraryExtractorTest
+    extends TestCase
+{
+    private File directory;
+
+    protected void setUp()
+        throws Exception
+    {
+        directory = new File( "target/test-natives" );
+        FileUtils.deleteDirectory( directory );
+        directory.mkdirs();
+    }
+
+    public void testExtractFiltersByArchitecture()
+        throws IOException
+    {
+        File jar = createJar( "sqlite-jdbc.jar", new String[] { "org/sqlite/JDBC.class",
+            "org/sqlite/native/Mac/x86_64/libsqlitejdbc.jnilib", "org/sqlite/native/Mac/aarch64/libsqlitejdbc.jnilib",
+            "org/sqlite/native/Linux/x86_64/libsqlitejdbc.so" } );
+
+        File libs = new File( directory, "MacOS" );
+        NativeLibraryExtractor extractor =
+            new NativeLibraryExtractor( null, new String[] { "**/x86_64/**" } );
+
+        assertEquals( Arrays.asList( new String[] { "libsqlitejdbc.jnilib" } ), extractor.extract( jar, libs ) );
+        assertEquals( "org/sqlite/native/Mac/aarch64/libsqlitejdbc.jnilib",
+                      FileUtils.fileRead( new File( libs, "libsqlitejdbc.jnilib" ) ) );
+        assertTrue( extractor.getSkippedEntries().isEmpty() );
+
+        Map properties = extractor.getSystemProperties( "$APP_PACKAGE/Contents/MacOS" );
+        assertEquals( "$APP_PACKAGE/Contents/MacOS", properties.get( "java.library.path" ) );
+        assertEquals( "$APP_PACKAGE/Contents/MacOS", properties.get( "org.sqlite.lib.path" ) );
+        assertEquals( "libsqlitejdbc.jnilib", properties.get( "org.sqlite.lib.name" ) );
+        assertNull( properties.get( "jna.boot.library.path" ) );
+    }
+
+    public void testDuplicateNamesAreSkipped()
+        throws IOException
+    {
+        File jar = createJar( "jna.jar", new String[] { "com/sun/jna/darwin-x86-64/libjnidispatch.jnilib",
+            "com/sun/jna/darwin-aarch64/libjnidispatch.jnilib", "com/example/darwin/libexample.dylib" } );
+
+        NativeLibraryExtractor extractor = new NativeLibraryExtractor( null, null );
+        extractor.extract( jar, new File( directory, "lib" ) );
+
+        assertEquals( Arrays.asList( new String[] { "jna.jar!/com/sun/jna/darwin-aarch64/libjnidispatch.jnilib" } ),
+                      extractor.getSkippedEntries() );
+        assertTrue( new File( directory, "lib/libjnidispatch.jnilib" ).isFile() );
+        assertTrue( new File( directory, "lib/libexample.dylib" ).isFile() );
+    }
+
+    public void testNonZipFilesAreSkipped()
+        throws IOException
+    {
+        File pom = new File( directory, "parent-1.0.pom" );
+        FileUtils.fileWrite( pom.getPath(), "<project/>" );
+
+        NativeLibraryExtractor extractor = new NativeLibraryExtractor( null, null );
+
+        assertTrue( extractor.extract( pom, new File( directory, "lib" ) ).isEmpty() );
+        assertTrue( extractor.getSystemProperties( "lib" ).isEmpty() );
+    }
+
+    public void testNothingExtracted()
+        throws IOException
+    {
+        File jar = createJar( "plain.jar", new String[] { "com/example/Main.class" } );
+
+        NativeLibraryExtractor extractor = new NativeLibraryExtractor( null, null );
+
+        assertTrue( extractor.extract( jar, new File( directory, "lib" ) ).isEmpty() );
+        assertTrue( extractor.getSystemProperties( "lib" ).isEmpty() );
+        assertFalse( new File( directory, "lib" ).exists() );
+    }
+
+    private File createJar( String name, String[] entries )
+        throws IOException
+    {
+        return TestJars.createJar( new File( directory, name ), entries );
+    }
+}
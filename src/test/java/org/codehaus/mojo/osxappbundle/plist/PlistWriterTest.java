@@ -0,0 +1,103 @@
+package org.codehaus.mojo.osxappbundle.plist;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+public class PlistWriterTest
+    extends TestCase
+{
+
+    public void testWrite()
+        throws IOException
+    {
+        PlistDict root = new PlistDict();
+        root.put( "CFBundleName", "Tom & Jerry" );
+        root.put( "CFBundleAllowMixedLocalizations", true );
+        root.put( "Missing", (String) null );
+        root.put( "Count", new PlistInteger( 42 ) );
+        root.put( "Ratio", new PlistReal( 0.5 ) );
+        root.put( "Built", new PlistDate( new Date( 1218283200000L ) ) );
+        root.getDict( "Java" ).put( "ClassPath", new PlistArray().add( "$JAVAROOT/repo/a&b/<x>.jar" ) );
+        root.getDict( "Java" ).put( "Empty", new PlistArray() );
+
+        StringWriter out = new StringWriter();
+        PlistWriter.write( root, out );
+
+        assertEquals( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<!DOCTYPE plist PUBLIC \"-//Apple//DTD PLIST 1.0//EN\" \"http://www.apple.com/DTDs/PropertyList-1.0.dtd\">\n"
+            + "<plist version=\"1.0\">\n"
+            + "<dict>\n"
+            + "\t<key>CFBundleName</key>\n"
+            + "\t<string>Tom &amp; Jerry</string>\n"
+            + "\t<key>CFBundleAllowMixedLocalizations</key>\n"
+            + "\t<true/>\n"
+            + "\t<key>Count</key>\n"
+            + "\t<integer>42</integer>\n"
+            + "\t<key>Ratio</key>\n"
+            + "\t<real>0.5</real>\n"
+            + "\t<key>Built</key>\n"
+            + "\t<date>2008-08-09T12:00:00Z</date>\n"
+            + "\t<key>Java</key>\n"
+            + "\t<dict>\n"
+            + "\t\t<key>ClassPath</key>\n"
+            + "\t\t<array>\n"
+            + "\t\t\t<string>$JAVAROOT/repo/a&amp;b/&lt;x&gt;.jar</string>\n"
+            + "\t\t</array>\n"
+            + "\t\t<key>Empty</key>\n"
+            + "\t\t<array>\n"
+            + "\t\t</array>\n"
+            + "\t</dict>\n"
+            + "</dict>\n"
+            + "</plist>\n", out.toString() );
+    }
+
+    public void testEscape()
+    {
+        String plain = "nothing to escape";
+        assertSame( plain, PlistWriter.escape( plain ) );
+        assertEquals( "a &lt;b&gt; &amp; &quot;c&quot;\t\u00e6", PlistWriter.escape( "a <b> & \"c\"\t\u00e6" ) );
+
+        try
+        {
+            PlistWriter.escape( "bell\u0007" );
+            fail( "Control characters can't be written to XML" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().indexOf( "0x7" ) > 0 );
+        }
+    }
+
+    public void testGetDictOfOtherType()
+    {
+        PlistDict root = new PlistDict().put( "Java", "not a dict" );
+        try
+        {
+            root.getDict( "Java" );
+            fail( "A string is not a dictionary" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.codehaus.mojo.osxappbundle.report;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+import org.codehaus.mojo.osxappbundle.TestJars;
+import org.codehaus.plexus.util.FileUtils;
+
+public class BundleReportTest
+    extends TestCase
+{
+    private File directory;
+
+    protected void setUp()
+        throws Exception
+    {
+        directory = new File( "target/test-report" );
+        FileUtils.deleteDirectory( directory );
+        directory.mkdirs();
+    }
+
+    public void testDuplicatesAndBaseline()
+        throws IOException
+    {
+        Map<String, File> jars = new LinkedHashMap<String, File>();
+        jars.put( "repo/app.jar", TestJars.createJar( new File( directory, "app.jar" ), new String[] {
+            "META-INF/MANIFEST.MF", "com/example/Main.class", "org/shared/Util.class", "org/shared/Other.class",
+            "log4j.properties" } ) );
+
+        Map<String, byte[]> lib = TestJars.namedEntries( new String[] { "META-INF/MANIFEST.MF", "org/shared/Util.class",
+            "org/shared/Other.class", "log4j.properties" } );
+        lib.put( "big.bin", new byte[4096] );
+        jars.put( "repo/lib.jar", TestJars.createJar( new File( directory, "lib.jar" ), lib ) );
+
+        Map<String, String> trails =
+            Collections.singletonMap( "repo/lib.jar", "com.example:app:jar:1.0 -> com.example:lib:jar:1.0" );
+
+        BundleReport report = BundleReport.create( jars, trails, 2 );
+        assertEquals( 2, report.getDuplicateClassCount() );
+        assertEquals( 1, report.getDuplicateResourceCount() );
+
+        Properties baseline = new Properties();
+        baseline.setProperty( "total", "10" );
+        baseline.setProperty( "repo/app.jar", "10" );
+        baseline.setProperty( "repo/old.jar", "5" );
+
+        StringWriter text = new StringWriter();
+        report.write( new PrintWriter( text ), "Bundle report", baseline, 1 );
+        String written = text.toString();
+
+        assertTrue( written, written.indexOf( "via com.example:app:jar:1.0 -> com.example:lib:jar:1.0" ) > 0 );
+        assertTrue( written, written.indexOf( "2 in repo/app.jar, repo/lib.jar" ) > 0 );
+        assertTrue( written, written.indexOf( "org/shared/Util.class" ) > 0 );
+        assertTrue( written, written.indexOf( "MANIFEST.MF" ) < 0 );
+        assertTrue( written, written.indexOf( "(new)" ) > 0 );
+        assertTrue( written, written.indexOf( "Removed since the baseline" ) > 0 );
+        assertTrue( written, written.indexOf( "repo/lib.jar!/big.bin" ) > 0 );
+
+        assertEquals( String.valueOf( jars.get( "repo/lib.jar" ).length() ),
+                      report.toBaseline().getProperty( "repo/lib.jar" ) );
+    }
+
+    public void testNonZipFilesListedBySize()
+        throws IOException
+    {
+        File pom = new File( directory, "parent-1.0.pom" );
+        FileUtils.fileWrite( pom.getPath(), "<project/>" );
+
+        Map<String, File> jars = new LinkedHashMap<String, File>();
+        jars.put( "repo/app.jar", TestJars.createJar( new File( directory, "app.jar" ),
+                                                      new String[] { "com/example/Main.class" } ) );
+        jars.put( "repo/parent-1.0.pom", pom );
+
+        BundleReport report = BundleReport.create( jars, Collections.<String, String> emptyMap(), 1 );
+
+        StringWriter text = new StringWriter();
+        report.write( new PrintWriter( text ), "Bundle report", null, 5 );
+        assertTrue( text.toString(), text.toString().indexOf( "repo/parent-1.0.pom" ) > 0 );
+        assertEquals( String.valueOf( pom.length() ), report.toBaseline().getProperty( "repo/parent-1.0.pom" ) );
+    }
+
+    public void testFormatSize()
+    {
+        assertEquals( "512 B", BundleReport.formatSize( 512 ) );
+        assertEquals( "1.5 KB", BundleReport.formatSize( 1536 ) );
+        assertEquals( "2.0 MB", BundleReport.formatSize( 2 * 1024 * 1024 ) );
+    }
+}
@@ -0,0 +1,130 @@
+package org.codehaus.mojo.osxappbundle.scan;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.SelectorUtils;
+
+public class ResourceWalkerTest
+    extends TestCase
+{
+    private static final String[] PATTERNS = { "**/**", "**/*.txt", "*.txt", "docs/**", "docs/", "docs/*.html",
+        "**/.svn/**", "**/CVS", "a/**/b", "a/**/b/*.x", "?.txt", "**/images/*.png", "README", "%ant[**/*.html]" };
+
+    private static final String[] PATHS = { "README", "README.txt", "a.txt", "docs", "docs/index.html",
+        "docs/guide/index.html", "docs/guide/a.txt", ".svn/entries", "src/.svn/entries", "CVS", "src/CVS", "a/b",
+        "a/x/y/b", "a/b/c.x", "a/x/b/c.x", "ab.txt", "site/images/logo.png", "site/images/big/logo.png" };
+
+    private static final String[] TREE = { "README", "README.txt", "ab.txt", "docs/index.html", "docs/guide/index.html",
+        "docs/guide/a.txt", "docs/.svn/entries", "src/CVS/Entries", "src/main.c", "a/x/y/b.txt", "site/images/logo.png" };
+
+    private File directory;
+
+    protected void setUp()
+        throws Exception
+    {
+        directory = new File( "target/test-walk" );
+        FileUtils.deleteDirectory( directory );
+        directory.mkdirs();
+    }
+
+    public void testPatternsMatchLikeSelectorUtils()
+    {
+        for ( int i = 0; i < PATTERNS.length; i++ )
+        {
+            PathPatterns patterns = new PathPatterns( Collections.singletonList( PATTERNS[i] ) );
+            String pattern = PATTERNS[i].endsWith( "/" ) ? PATTERNS[i] + "**" : PATTERNS[i];
+            for ( int j = 0; j < PATHS.length; j++ )
+            {
+                assertEquals( PATTERNS[i] + " ~ " + PATHS[j], SelectorUtils.matchPath( pattern, PATHS[j] ),
+                              patterns.matches( PATHS[j] ) );
+            }
+        }
+    }
+
+    public void testWalkCopiesIncludedFiles()
+        throws IOException
+    {
+        ResourceWalker walker = createTree();
+
+        final List<String> visited = new ArrayList<String>();
+        long count = walker.walk( directory, new ResourceWalker.Visitor()
+        {
+            public void visit( Path source, String path )
+            {
+                visited.add( path );
+            }
+        } );
+
+        Collections.sort( visited );
+        assertEquals( Arrays.asList( new String[] { "README", "README.txt", "ab.txt", "docs/guide/a.txt",
+            "docs/guide/index.html", "docs/index.html" } ), visited );
+        assertEquals( 6, count );
+        assertTrue( walker.isIncluded( "docs/new.png" ) );
+        assertFalse( walker.isIncluded( "a/new.txt" ) );
+    }
+
+    public void testWalkSortedVisitsInOrder()
+        throws IOException
+    {
+        ResourceWalker walker = createTree();
+
+        final List<String> visited = new ArrayList<String>();
+        long count = walker.walkSorted( directory, new ResourceWalker.Visitor()
+        {
+            public void visit( Path source, String path )
+            {
+                visited.add( path );
+            }
+        } );
+
+        assertEquals( Arrays.asList( new String[] { "README", "README.txt", "ab.txt", "docs/guide/a.txt",
+            "docs/guide/index.html", "docs/index.html" } ), visited );
+        assertEquals( 6, count );
+    }
+
+    /**
+     * Write the files of {@link #TREE}.
+     *
+     * @return A walker for text files, the docs and the README, with the default excludes and everything below a
+     */
+    private ResourceWalker createTree()
+        throws IOException
+    {
+        for ( int i = 0; i < TREE.length; i++ )
+        {
+            File file = new File( directory, TREE[i] );
+            file.getParentFile().mkdirs();
+            FileUtils.fileWrite( file.getPath(), TREE[i] );
+        }
+
+        List<String> excludes = new ArrayList<String>( Arrays.asList( DirectoryScanner.DEFAULTEXCLUDES ) );
+        excludes.add( "a/**" );
+        return new ResourceWalker( Arrays.asList( new String[] { "**/*.txt", "docs/**", "README" } ), excludes );
+    }
+}
@@ -0,0 +1,152 @@
+package org.codehaus.mojo.osxappbundle.watch;
+
+/*
+ * Copyright 2001-2008 The Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class BundleWatcherTest
+    extends TestCase
+{
+    private File directory;
+
+    private BundleWatcher watcher;
+
+    protected void setUp()
+        throws Exception
+    {
+        directory = new File( "target/test-watch" ).getAbsoluteFile();
+        FileUtils.deleteDirectory( directory );
+        directory.mkdirs();
+        watcher = new BundleWatcher();
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        watcher.close();
+    }
+
+    public void testWatchedFileChange()
+        throws Exception
+    {
+        File jar = new File( directory, "app.jar" );
+        File other = new File( directory, "other.jar" );
+        FileUtils.fileWrite( jar.getPath(), "1" );
+
+        watcher.watchFile( jar );
+
+        FileUtils.fileWrite( other.getPath(), "1" );
+        FileUtils.fileWrite( jar.getPath(), "2" );
+
+        Set changes = watcher.awaitChanges( 200 );
+        assertTrue( changes.contains( jar ) );
+        assertFalse( changes.contains( other ) );
+    }
+
+    public void testUnrelatedFileKeepsWaiting()
+        throws Exception
+    {
+        final File jar = new File( directory, "app.jar" );
+        FileUtils.fileWrite( jar.getPath(), "1" );
+
+        watcher.watchFile( jar );
+
+        // Wakes the watcher up, but it's quiet for longer than the debounce period before the jar changes
+        FileUtils.fileWrite( new File( directory, "other.jar" ).getPath(), "1" );
+        Thread writer = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep( 1000 );
+                    FileUtils.fileWrite( jar.getPath(), "2" );
+                }
+                catch ( Exception e )
+                {
+                    throw new RuntimeException( e );
+                }
+            }
+        };
+        writer.start();
+
+        Set changes = watcher.awaitChanges( 200 );
+        writer.join();
+        assertEquals( Collections.singleton( jar ), changes );
+    }
+
+    public void testTreeChangesIncludeNewDirectories()
+        throws Exception
+    {
+        File resources = new File( directory, "resources" );
+        resources.mkdirs();
+
+        watcher.watchTree( resources );
+
+        File readme = new File( resources, "README.txt" );
+        FileUtils.fileWrite( readme.getPath(), "readme" );
+        File nested = new File( resources, "docs/guide/index.html" );
+        nested.getParentFile().mkdirs();
+        FileUtils.fileWrite( nested.getPath(), "guide" );
+
+        Set changes = watcher.awaitChanges( 200 );
+        assertTrue( changes.contains( readme ) );
+        assertTrue( changes.contains( nested ) );
+
+        readme.delete();
+        changes = watcher.awaitChanges( 200 );
+        assertTrue( changes.contains( readme ) );
+    }
+
+    public void testPolling()
+        throws Exception
+    {
+        watcher.close();
+        watcher = new BundleWatcher( 50 );
+
+        File jar = new File( directory, "app.jar" );
+        FileUtils.fileWrite( jar.getPath(), "1" );
+        File resources = new File( directory, "resources" );
+        File readme = new File( resources, "README.txt" );
+        readme.getParentFile().mkdirs();
+        FileUtils.fileWrite( readme.getPath(), "readme" );
+
+        watcher.watchFile( jar );
+        watcher.watchTree( resources );
+
+        FileUtils.fileWrite( jar.getPath(), "22" );
+        File nested = new File( resources, "docs/index.html" );
+        nested.getParentFile().mkdirs();
+        FileUtils.fileWrite( nested.getPath(), "guide" );
+
+        Set changes = watcher.awaitChanges( 200 );
+        assertTrue( changes.contains( jar ) );
+        assertTrue( changes.contains( nested ) );
+        assertFalse( changes.contains( readme ) );
+
+        readme.delete();
+        changes = watcher.awaitChanges( 200 );
+        assertEquals( 1, changes.size() );
+        assertTrue( changes.contains( readme ) );
+    }
+}